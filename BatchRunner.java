@@ -0,0 +1,367 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command-line batch conversion of JSON payloads, for backfills and capacity tests.
+ *
+ * Payloads are read from a directory of {@code .json} files, one payload per file, or as
+ * newline-delimited JSON from a file or standard input, and transcoded to XML by
+ * {@link JsonXmlTranscoder} on a fixed number of worker threads. Outputs are written to a directory,
+ * named after the input file or numbered by line, or discarded to measure conversion alone. Failed
+ * payloads are reported and skipped. At the end the run is summarized: throughput, mean/p50/p99/max
+ * latency per payload from reading its input to writing its output, and the bytes allocated by the
+ * workers per payload.
+ *
+ * Usage: {@code BatchRunner <mapping.xlsx> <input directory | payloads.ndjson | -> [--out=directory]
+ * [--workers=n] [--no-indent]}. The exit code is 1 if any payload failed.
+ */
+public class BatchRunner {
+
+    private static final int MAX_REPORTED_FAILURES = 10;
+    private static final long QUEUE_POLL_MILLIS = 100;
+
+    private final JsonXmlTranscoder transcoder;
+    private final Path outputDirectory;
+    private final int workers;
+    private final boolean indent;
+
+    /**
+     * Creates a runner.
+     *
+     * @param plan            The compiled mapping plan.
+     * @param outputDirectory The directory outputs are written to, or null to discard them.
+     * @param workers         The number of worker threads.
+     * @param indent          Whether to pretty print the output.
+     */
+    public BatchRunner(MappingPlan plan, Path outputDirectory, int workers, boolean indent) {
+        if (workers < 1) {
+            throw new IllegalArgumentException("workers must be positive.");
+        }
+        this.transcoder = new JsonXmlTranscoder(plan);
+        this.outputDirectory = outputDirectory;
+        this.workers = workers;
+        this.indent = indent;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> paths = new ArrayList<>();
+        Path outputDirectory = null;
+        int workers = Runtime.getRuntime().availableProcessors();
+        boolean indent = true;
+        for (String arg : args) {
+            if (arg.startsWith("--out=")) {
+                outputDirectory = Paths.get(arg.substring("--out=".length()));
+            } else if (arg.startsWith("--workers=")) {
+                workers = Integer.parseInt(arg.substring("--workers=".length()));
+            } else if (arg.equals("--no-indent")) {
+                indent = false;
+            } else if (arg.startsWith("--")) {
+                System.err.println("Unknown option: " + arg);
+                paths.clear();
+                break;
+            } else {
+                paths.add(arg);
+            }
+        }
+        if (paths.size() != 2) {
+            System.err.println("Usage: BatchRunner <mapping.xlsx> <input directory | payloads.ndjson | -> [--out=directory] [--workers=n] [--no-indent]");
+            System.exit(2);
+        }
+
+        MappingPlan plan = MappingPlan.compile(ExcelMappingReader.readMappingsStreaming(paths.get(0)));
+        if (outputDirectory != null) {
+            Files.createDirectories(outputDirectory);
+        }
+        Summary summary = new BatchRunner(plan, outputDirectory, workers, indent).run(paths.get(1));
+        summary.print(System.out);
+        if (summary.failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Converts all payloads of an input and waits for the workers to finish.
+     *
+     * @param input A directory of JSON files, a file of newline-delimited JSON, or {@code -} for standard input.
+     * @return The results of the run.
+     * @throws Exception if the input cannot be read or a worker died; failures of single payloads are only counted.
+     */
+    public Summary run(String input) throws Exception {
+        BlockingQueue<Payload> queue = new ArrayBlockingQueue<>(workers * 4);
+        ExecutorService pool = Executors.newFixedThreadPool(workers);
+        List<Future<Summary>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        try {
+            for (int i = 0; i < workers; i++) {
+                results.add(pool.submit(() -> work(queue)));
+            }
+            try {
+                if (input.equals("-")) {
+                    readLines(System.in, queue, results);
+                } else if (Files.isDirectory(Paths.get(input))) {
+                    readDirectory(Paths.get(input), queue, results);
+                } else {
+                    try (InputStream in = Files.newInputStream(Paths.get(input))) {
+                        readLines(in, queue, results);
+                    }
+                }
+            } finally {
+                for (int i = 0; i < workers; i++) {
+                    if (!offer(queue, Payload.END, results)) {
+                        break;
+                    }
+                }
+            }
+            Summary summary = new Summary(workers);
+            for (Future<Summary> result : results) {
+                summary.merge(result.get());
+            }
+            summary.elapsedNanos = System.nanoTime() - start;
+            return summary;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Queues every {@code .json} file of a directory as one payload; stops early if no worker is left.
+     */
+    private static void readDirectory(Path directory, BlockingQueue<Payload> queue, List<Future<Summary>> workers) throws Exception {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*.json")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (!offer(queue, new Payload(name.substring(0, name.length() - ".json".length()), file, null), workers)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues every non-blank line of newline-delimited JSON as one payload; stops early if no worker is left.
+     */
+    private static void readLines(InputStream in, BlockingQueue<Payload> queue, List<Future<Summary>> workers) throws Exception {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        long number = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            number++;
+            if (!line.isBlank() && !offer(queue, new Payload(String.format("payload-%08d", number), null, line), workers)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Queues a payload once there is room, unless every worker has stopped, e.g. on an Error.
+     *
+     * @return Whether the payload was queued; if not, the failure of the workers surfaces from their results.
+     */
+    private static boolean offer(BlockingQueue<Payload> queue, Payload payload, List<Future<Summary>> workers) throws InterruptedException {
+        while (!queue.offer(payload, QUEUE_POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+            if (workers.stream().allMatch(Future::isDone)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converts payloads until the end marker, recording latency and allocation of this worker.
+     */
+    private Summary work(BlockingQueue<Payload> queue) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        boolean measureAllocation = threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = measureAllocation ? threads.getThreadAllocatedBytes(threadId) : 0;
+        Summary summary = new Summary(1);
+        for (Payload payload = queue.take(); payload != Payload.END; payload = queue.take()) {
+            long begin = System.nanoTime();
+            try {
+                summary.bytesOut += convert(payload);
+                summary.latency.record(System.nanoTime() - begin);
+                summary.converted++;
+            } catch (Exception e) {
+                summary.failed(payload.name, e);
+            }
+        }
+        summary.allocatedBytes = measureAllocation ? threads.getThreadAllocatedBytes(threadId) - allocatedBefore : -1;
+        return summary;
+    }
+
+    /**
+     * Converts one payload and returns the size of its output; the output of a failed payload is removed.
+     */
+    private long convert(Payload payload) throws Exception {
+        Path target = outputDirectory != null ? outputDirectory.resolve(payload.name + ".xml") : null;
+        CountingOutputStream out = new CountingOutputStream(target != null
+                ? new BufferedOutputStream(Files.newOutputStream(target))
+                : OutputStream.nullOutputStream());
+        try (out) {
+            if (payload.file != null) {
+                try (InputStream in = Files.newInputStream(payload.file)) {
+                    transcoder.transcode(in, out, indent);
+                }
+            } else {
+                Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+                transcoder.transcode(new StringReader(payload.json), writer, indent);
+            }
+        } catch (Exception e) {
+            if (target != null) {
+                Files.deleteIfExists(target);
+            }
+            throw e;
+        }
+        return out.count;
+    }
+
+    /**
+     * One payload: a file or a line of JSON.
+     */
+    private static final class Payload {
+        private static final Payload END = new Payload(null, null, null);
+
+        private final String name;
+        private final Path file;
+        private final String json;
+
+        private Payload(String name, Path file, String json) {
+            this.name = name;
+            this.file = file;
+            this.json = json;
+        }
+    }
+
+    /**
+     * Counts the bytes written through it.
+     */
+    private static final class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        private CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * Results of a run, or of one worker during a run.
+     */
+    public static final class Summary {
+        private final int workers;
+        private final LatencyStats latency = new LatencyStats();
+        private final List<String> failures = new ArrayList<>();
+        private long converted;
+        private long failed;
+        private long bytesOut;
+        private long allocatedBytes; // -1 if not measurable
+        private long elapsedNanos;
+
+        private Summary(int workers) {
+            this.workers = workers;
+        }
+
+        /**
+         * Gets the number of payloads converted.
+         */
+        public long getConverted() {
+            return converted;
+        }
+
+        /**
+         * Gets the number of payloads that failed.
+         */
+        public long getFailed() {
+            return failed;
+        }
+
+        /**
+         * Gets the latency samples of the converted payloads.
+         */
+        public LatencyStats getLatency() {
+            return latency;
+        }
+
+        private void failed(String name, Exception e) {
+            failed++;
+            if (failures.size() < MAX_REPORTED_FAILURES) {
+                failures.add(name + ": " + e);
+            }
+        }
+
+        private void merge(Summary other) {
+            latency.merge(other.latency);
+            for (String failure : other.failures) {
+                if (failures.size() < MAX_REPORTED_FAILURES) {
+                    failures.add(failure);
+                }
+            }
+            converted += other.converted;
+            failed += other.failed;
+            bytesOut += other.bytesOut;
+            allocatedBytes = allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+        }
+
+        /**
+         * Prints the summary in a few lines.
+         */
+        public void print(PrintStream out) {
+            double seconds = elapsedNanos / 1_000_000_000.0;
+            out.printf("Converted %d payloads (%d failed) in %s with %d workers%n",
+                    converted, failed, LatencyStats.format(elapsedNanos), workers);
+            out.printf("Throughput: %.1f payloads/s, %.1f MB/s of XML%n",
+                    converted / seconds, bytesOut / seconds / (1024 * 1024));
+            out.printf("Latency: mean %s, p50 %s, p99 %s, max %s%n",
+                    LatencyStats.format(latency.mean()),
+                    LatencyStats.format(latency.percentile(50)),
+                    LatencyStats.format(latency.percentile(99)),
+                    LatencyStats.format(latency.percentile(100)));
+            if (allocatedBytes >= 0) {
+                out.printf("Allocation: %d B per payload, %.1f MB in total%n",
+                        allocatedBytes / Math.max(1, converted + failed), allocatedBytes / (1024.0 * 1024));
+            } else {
+                out.println("Allocation: not measurable on this JVM");
+            }
+            for (String failure : failures) {
+                out.println("Failed " + failure);
+            }
+            if (failed > failures.size()) {
+                out.println("... " + (failed - failures.size()) + " more failures");
+            }
+        }
+    }
+}
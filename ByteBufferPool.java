@@ -0,0 +1,132 @@
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread-safe pool of heap or direct ByteBuffers in power-of-two size classes.
+ *
+ * Conversions take a buffer, grow it by trading it for the next size class and hand it back when
+ * the caller is done with the bytes, so a steady stream of large documents reuses the same memory
+ * instead of allocating and copying a fresh array per response. Buffers above the retained capacity
+ * and buffers beyond the per-class limit are left to the garbage collector.
+ */
+public final class ByteBufferPool {
+
+    private static final int DEFAULT_MIN_CAPACITY = 8192;
+    private static final int DEFAULT_MAX_RETAINED_CAPACITY = 16 << 20;
+    private static final int DEFAULT_BUFFERS_PER_CLASS = 16;
+
+    private final boolean direct;
+    private final int minCapacity;
+    private final int maxRetainedCapacity;
+    private final int buffersPerClass;
+    private final ConcurrentLinkedQueue<ByteBuffer>[] free;
+    private final AtomicInteger[] freeCounts;
+
+    /**
+     * Creates a pool of heap buffers with the default limits.
+     */
+    public ByteBufferPool() {
+        this(false);
+    }
+
+    /**
+     * Creates a pool with the default limits.
+     *
+     * @param direct Whether to allocate direct buffers.
+     */
+    public ByteBufferPool(boolean direct) {
+        this(direct, DEFAULT_MIN_CAPACITY, DEFAULT_MAX_RETAINED_CAPACITY, DEFAULT_BUFFERS_PER_CLASS);
+    }
+
+    /**
+     * Creates a pool.
+     *
+     * @param direct              Whether to allocate direct buffers.
+     * @param minCapacity         The smallest buffer handed out; rounded up to a power of two.
+     * @param maxRetainedCapacity Buffers larger than this are not kept for reuse.
+     * @param buffersPerClass     The number of free buffers kept per size class.
+     */
+    @SuppressWarnings("unchecked")
+    public ByteBufferPool(boolean direct, int minCapacity, int maxRetainedCapacity, int buffersPerClass) {
+        if (minCapacity <= 0 || maxRetainedCapacity < minCapacity || buffersPerClass < 0) {
+            throw new IllegalArgumentException("Invalid pool limits: " + minCapacity + ", " + maxRetainedCapacity + ", " + buffersPerClass);
+        }
+        this.direct = direct;
+        this.minCapacity = roundUp(minCapacity);
+        this.maxRetainedCapacity = maxRetainedCapacity;
+        this.buffersPerClass = buffersPerClass;
+        int classes = sizeClass(roundUp(maxRetainedCapacity)) + 1;
+        // Generic arrays cannot be created; the queues are only ever typed for ByteBuffer
+        @SuppressWarnings("unchecked")
+        ConcurrentLinkedQueue<ByteBuffer>[] queues = (ConcurrentLinkedQueue<ByteBuffer>[]) new ConcurrentLinkedQueue<?>[classes];
+        this.free = queues;
+        this.freeCounts = new AtomicInteger[classes];
+        for (int i = 0; i < classes; i++) {
+            free[i] = new ConcurrentLinkedQueue<>();
+            freeCounts[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Takes a cleared buffer with at least the given capacity from the pool, allocating one if none is free.
+     *
+     * @param capacity The required capacity.
+     * @return A buffer in write mode.
+     */
+    public ByteBuffer acquire(int capacity) {
+        int size = roundUp(Math.max(capacity, minCapacity));
+        int sizeClass = sizeClass(size);
+        if (sizeClass < free.length) {
+            ByteBuffer buffer = free[sizeClass].poll();
+            if (buffer != null) {
+                freeCounts[sizeClass].decrementAndGet();
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+    }
+
+    /**
+     * Returns a buffer to the pool; it must not be used by the caller afterwards.
+     *
+     * @param buffer A buffer obtained from {@link #acquire(int)}, or null.
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || buffer.isDirect() != direct || buffer.capacity() > maxRetainedCapacity
+                || Integer.bitCount(buffer.capacity()) != 1) {
+            return;
+        }
+        int sizeClass = sizeClass(buffer.capacity());
+        if (sizeClass < free.length && freeCounts[sizeClass].incrementAndGet() <= buffersPerClass) {
+            free[sizeClass].offer(buffer);
+        } else if (sizeClass < free.length) {
+            freeCounts[sizeClass].decrementAndGet();
+        }
+    }
+
+    /**
+     * Determines if this pool hands out direct buffers.
+     */
+    public boolean isDirect() {
+        return direct;
+    }
+
+    /**
+     * Rounds a capacity up to the next power of two.
+     */
+    private static int roundUp(int capacity) {
+        if (capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Buffer capacity too large: " + capacity);
+        }
+        return capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    }
+
+    /**
+     * Gets the size class of a power-of-two capacity.
+     */
+    private static int sizeClass(int capacity) {
+        return Integer.numberOfTrailingZeros(capacity);
+    }
+}
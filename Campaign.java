@@ -0,0 +1,27 @@
+public class Campaign {
+    private String campaignId;
+    private String name;
+    private String status;
+
+    // Constructors
+    public Campaign() {}
+
+    public Campaign(String campaignId, String name, String status) {
+        this.campaignId = campaignId;
+        this.name = name;
+        this.status = status;
+    }
+
+    // Getters and Setters
+    public String getCampaignId() {
+        return campaignId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,614 @@
+import javax.tools.*;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.constant.ConstantDescs;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.*;
+import java.net.URI;
+import java.security.CodeSource;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writer specialized for one mapping plan and one root API class.
+ *
+ * On first use for a (plan, root class) pair, Java source is generated that walks the object graph
+ * with a dedicated method per collection item type, compiled in memory with the platform compiler and
+ * defined as a hidden class next to this one. The result has no step type checks, field name lookups or
+ * list casts left for the JIT to see through. Each property is read through the member the interpreter's
+ * {@link ValueAccessors} resolve for it: getters and record accessors are called directly, fields are
+ * read through typed method handles held in static final fields, so the JIT inlines them like a getter.
+ * Properties of registered providers, and objects whose class differs from the declared one, are read
+ * the way the interpreter reads them.
+ *
+ * Code generation is best effort: without a system Java compiler (e.g. on a JRE) or if the generated
+ * source does not compile or load, the writer falls back to the interpreter in {@link XmlBuilder}, so
+ * output is the same either way. The reason is logged, and {@link #isGenerated()} tells which writer was
+ * built. Root classes this class's loader cannot see, e.g. from a plugin loader, and responses that are
+ * not instances of the root class are interpreted as well.
+ */
+public abstract class CompiledXmlWriter {
+
+    private static final Logger LOGGER = Logger.getLogger(CompiledXmlWriter.class.getName());
+
+    private static final String GENERATED_CLASS_PREFIX = "GeneratedXmlWriter";
+    private static final AtomicInteger GENERATED_CLASS_COUNT = new AtomicInteger();
+
+    private final MappingPlan plan;
+    private final Class<?> rootClass;
+
+    protected CompiledXmlWriter(MappingPlan plan, Class<?> rootClass) {
+        this.plan = plan;
+        this.rootClass = rootClass;
+    }
+
+    /**
+     * Returns the cached writer for a plan and root class, generating it on first use.
+     *
+     * @param plan      The compiled mapping plan.
+     * @param rootClass The class of the API responses that will be converted.
+     * @return The writer; generated code if available, otherwise the interpreter.
+     */
+    public static CompiledXmlWriter forPlan(MappingPlan plan, Class<?> rootClass) {
+        Map<Class<?>, CompiledXmlWriter> writers = plan.getCompiledWriters();
+        CompiledXmlWriter writer = writers.get(rootClass);
+        if (writer == null) {
+            // Compiled outside the map so the compiler never runs under its lock; a concurrent first use may
+            // compile twice and the first writer stored wins
+            writer = compile(plan, rootClass);
+            CompiledXmlWriter existing = writers.putIfAbsent(rootClass, writer);
+            if (existing != null) {
+                writer = existing;
+            }
+        }
+        return writer;
+    }
+
+    /**
+     * Streams the API response as XML to a Writer; the output equals {@link XmlBuilder#writeXml(MappingPlan, Object, Writer, boolean)}.
+     *
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public void writeXml(Object apiResponse, Writer writer, boolean indent) throws Exception {
+        StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+        xmlWriter.startDocument();
+        writeDocument(apiResponse, xmlWriter);
+        xmlWriter.endDocument();
+    }
+
+    /**
+     * Converts the API response to an XML string.
+     *
+     * @param apiResponse The API response object.
+     * @return XML as a String.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public String buildXml(Object apiResponse) throws Exception {
+        StringWriter writer = new StringWriter();
+        writeXml(apiResponse, writer, true);
+        return writer.toString();
+    }
+
+    /**
+     * Emits the root element and everything below it to the sink.
+     *
+     * @param apiResponse The API response object.
+     * @param sink        The destination of the elements.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public void writeDocument(Object apiResponse, XmlSink sink) throws Exception {
+        sink.startElement(plan.getRootElementName());
+        if (rootClass.isInstance(apiResponse)) {
+            writeRoot(apiResponse, sink);
+        } else {
+            XmlBuilder.writeSteps(sink, plan.getRoot().getSteps(), apiResponse);
+        }
+        sink.endElement();
+    }
+
+    /**
+     * Determines if this writer runs generated code rather than the interpreter.
+     */
+    public boolean isGenerated() {
+        return false;
+    }
+
+    /**
+     * Gets the plan this writer was built for.
+     */
+    public MappingPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Gets the root API class this writer was built for.
+     */
+    public Class<?> getRootClass() {
+        return rootClass;
+    }
+
+    /**
+     * Emits the children of the root element for a response known to be an instance of the root class.
+     */
+    protected abstract void writeRoot(Object apiResponse, XmlSink sink) throws Exception;
+
+    /**
+     * Generates, compiles and instantiates the writer, falling back to the interpreter if the platform
+     * cannot compile or load it.
+     */
+    private static CompiledXmlWriter compile(MappingPlan plan, Class<?> rootClass) {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            LOGGER.info("No system Java compiler available; interpreting " + rootClass.getName());
+            return new Interpreted(plan, rootClass);
+        }
+        if (!isAccessible(rootClass)) {
+            LOGGER.info("Generated code cannot reference " + rootClass.getName() + "; interpreting it");
+            return new Interpreted(plan, rootClass);
+        }
+        String className = GENERATED_CLASS_PREFIX + GENERATED_CLASS_COUNT.incrementAndGet();
+        SourceGenerator generator = new SourceGenerator(className, plan, rootClass);
+        String source = generator.generate();
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        byte[] bytecode = compileSource(compiler, className, source, rootClass, diagnostics);
+        if (bytecode == null) {
+            StringBuilder message = new StringBuilder("Generated writer for ").append(rootClass.getName())
+                    .append(" did not compile; interpreting it");
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                message.append('\n').append(diagnostic);
+            }
+            LOGGER.warning(message.toString());
+            return new Interpreted(plan, rootClass);
+        }
+
+        try {
+            MethodHandles.Lookup generated = MethodHandles.lookup().defineHiddenClassWithClassData(bytecode, generator.getHandles(), true);
+            Constructor<?> constructor = generated.lookupClass().getDeclaredConstructor(
+                    MappingPlan.class, Class.class, ValueConverter[].class, ValueAccessor[].class, MappingPlan.Node[].class);
+            return (CompiledXmlWriter) constructor.newInstance(plan, rootClass, generator.getConverters(), generator.getAccessors(), generator.getNodes());
+        } catch (ReflectiveOperationException | LinkageError e) {
+            LOGGER.log(Level.WARNING, "Generated writer for " + rootClass.getName() + " could not be loaded; interpreting it", e);
+            return new Interpreted(plan, rootClass);
+        }
+    }
+
+    /**
+     * Compiles one source file in memory and returns its class file, or null if it did not compile.
+     */
+    private static byte[] compileSource(JavaCompiler compiler, String className, String source, Class<?> rootClass,
+                                        DiagnosticCollector<JavaFileObject> diagnostics) {
+        ByteArrayOutputStream classFile = new ByteArrayOutputStream();
+        JavaFileObject sourceFile = new SimpleJavaFileObject(URI.create("string:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        StandardJavaFileManager standardFileManager = compiler.getStandardFileManager(null, null, null);
+        JavaFileManager fileManager = new ForwardingJavaFileManager<JavaFileManager>(standardFileManager) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("bytes:///" + name + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return classFile;
+                    }
+                };
+            }
+        };
+
+        List<String> options = Arrays.asList("-proc:none", "-g:none", "-classpath", getClassPath(rootClass));
+        try {
+            boolean compiled = compiler.getTask(null, fileManager, diagnostics, options, null, List.of(sourceFile)).call();
+            return compiled ? classFile.toByteArray() : null;
+        } finally {
+            try {
+                fileManager.close();
+            } catch (Exception ignored) {
+                // Nothing was opened on disk
+            }
+        }
+    }
+
+    /**
+     * Builds the compile class path from the application class path plus the locations of the classes involved.
+     */
+    private static String getClassPath(Class<?> rootClass) {
+        Set<String> entries = new LinkedHashSet<>(Arrays.asList(System.getProperty("java.class.path", "").split(File.pathSeparator)));
+        for (Class<?> type : new Class<?>[]{CompiledXmlWriter.class, rootClass}) {
+            CodeSource codeSource = type.getProtectionDomain().getCodeSource();
+            if (codeSource != null && codeSource.getLocation() != null) {
+                try {
+                    entries.add(new File(codeSource.getLocation().toURI()).getPath());
+                } catch (Exception ignored) {
+                    // Not a file location; rely on the application class path
+                }
+            }
+        }
+        entries.remove("");
+        return String.join(File.pathSeparator, entries);
+    }
+
+    /**
+     * Determines if generated code in this class's package can name the type.
+     *
+     * The generated class is defined in this class's loader, so the type must also resolve to the same
+     * class through it; otherwise the first call would fail to link.
+     */
+    static boolean isAccessible(Class<?> type) {
+        if (type.isPrimitive() || type.isArray() || type.isAnonymousClass() || type.isLocalClass() || type.getCanonicalName() == null) {
+            return false;
+        }
+        try {
+            if (Class.forName(type.getName(), false, CompiledXmlWriter.class.getClassLoader()) != type) {
+                return false;
+            }
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+        boolean samePackage = type.getPackageName().equals(CompiledXmlWriter.class.getPackageName())
+                && type.getClassLoader() == CompiledXmlWriter.class.getClassLoader();
+        for (Class<?> current = type; current != null; current = current.getEnclosingClass()) {
+            int modifiers = current.getModifiers();
+            if (!Modifier.isPublic(modifiers) && (!samePackage || Modifier.isPrivate(modifiers))) {
+                return false;
+            }
+            if (current.getEnclosingClass() != null && !Modifier.isStatic(modifiers)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writer used when code generation is unavailable.
+     */
+    private static final class Interpreted extends CompiledXmlWriter {
+        private Interpreted(MappingPlan plan, Class<?> rootClass) {
+            super(plan, rootClass);
+        }
+
+        @Override
+        protected void writeRoot(Object apiResponse, XmlSink sink) throws Exception {
+            XmlBuilder.writeSteps(sink, getPlan().getRoot().getSteps(), apiResponse);
+        }
+    }
+
+    /**
+     * Base of the generated writers; holds the converters, accessors and plan nodes referenced by the generated code.
+     */
+    abstract static class Generated extends CompiledXmlWriter {
+        protected final ValueConverter[] converters;
+        protected final ValueAccessor[] accessors;
+        protected final MappingPlan.Node[] nodes;
+
+        protected Generated(MappingPlan plan, Class<?> rootClass, ValueConverter[] converters, ValueAccessor[] accessors, MappingPlan.Node[] nodes) {
+            super(plan, rootClass);
+            this.converters = converters;
+            this.accessors = accessors;
+            this.nodes = nodes;
+        }
+
+        @Override
+        public boolean isGenerated() {
+            return true;
+        }
+
+        /**
+         * Returns the method handles passed to a generated class as class data; called from its static initializer.
+         */
+        protected static MethodHandle[] handles(MethodHandles.Lookup lookup) {
+            try {
+                return MethodHandles.classData(lookup, ConstantDescs.DEFAULT_NAME, MethodHandle[].class);
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    /**
+     * Translates a plan into the Java source of a {@link Generated} subclass.
+     *
+     * Each (item node, item class) pair becomes one method, so a node reached through several
+     * collections of the same type is generated once.
+     */
+    private static final class SourceGenerator {
+        private final String className;
+        private final MappingPlan plan;
+        private final Class<?> rootClass;
+        private final List<ValueConverter> converters = new ArrayList<>();
+        private final List<ValueAccessor> accessors = new ArrayList<>();
+        private final List<MethodHandle> handles = new ArrayList<>();
+        private final List<MappingPlan.Node> nodes = new ArrayList<>();
+        private final Map<String, String> itemMethods = new HashMap<>();
+        private final List<StringBuilder> methods = new ArrayList<>();
+        private int variables;
+
+        private SourceGenerator(String className, MappingPlan plan, Class<?> rootClass) {
+            this.className = className;
+            this.plan = plan;
+            this.rootClass = rootClass;
+        }
+
+        private String generate() {
+            String rootMethod = itemMethod(plan.getRoot(), rootClass);
+
+            StringBuilder source = new StringBuilder();
+            source.append("final class ").append(className).append(" extends CompiledXmlWriter.Generated {\n");
+            // Static finals are constants to the JIT, so invokeExact on them inlines the field read
+            source.append("    private static final java.lang.invoke.MethodHandle[] HANDLES = handles(java.lang.invoke.MethodHandles.lookup());\n");
+            for (int i = 0; i < handles.size(); i++) {
+                source.append("    private static final java.lang.invoke.MethodHandle H").append(i).append(" = HANDLES[").append(i).append("];\n");
+            }
+            source.append('\n');
+            source.append("    ").append(className).append("(MappingPlan plan, Class<?> rootClass, ValueConverter[] converters, ValueAccessor[] accessors, MappingPlan.Node[] nodes) {\n");
+            source.append("        super(plan, rootClass, converters, accessors, nodes);\n");
+            source.append("    }\n\n");
+            source.append("    @Override\n");
+            source.append("    protected void writeRoot(Object apiResponse, XmlSink sink) throws Exception {\n");
+            source.append("        try {\n");
+            source.append("            ").append(rootMethod).append("((").append(rootClass.getCanonicalName()).append(") apiResponse, sink);\n");
+            source.append("        } catch (Exception | Error e) {\n");
+            source.append("            throw e;\n");
+            source.append("        } catch (Throwable t) {\n");
+            source.append("            throw new java.lang.reflect.UndeclaredThrowableException(t);\n");
+            source.append("        }\n");
+            source.append("    }\n");
+            for (StringBuilder method : methods) {
+                source.append('\n').append(method);
+            }
+            source.append("}\n");
+            return source.toString();
+        }
+
+        private ValueConverter[] getConverters() {
+            return converters.toArray(new ValueConverter[0]);
+        }
+
+        private ValueAccessor[] getAccessors() {
+            return accessors.toArray(new ValueAccessor[0]);
+        }
+
+        private MethodHandle[] getHandles() {
+            return handles.toArray(new MethodHandle[0]);
+        }
+
+        private MappingPlan.Node[] getNodes() {
+            return nodes.toArray(new MappingPlan.Node[0]);
+        }
+
+        /**
+         * Returns the name of the method writing the steps of a node for one object, generating it if needed.
+         */
+        private String itemMethod(MappingPlan.Node node, Class<?> type) {
+            String key = System.identityHashCode(node) + "|" + type.getName();
+            String name = itemMethods.get(key);
+            if (name != null) {
+                return name;
+            }
+            name = "write" + methods.size();
+            itemMethods.put(key, name);
+
+            StringBuilder method = new StringBuilder();
+            methods.add(method);
+            method.append("    private void ").append(name).append('(').append(type.getCanonicalName())
+                    .append(" source, XmlSink sink) throws Throwable {\n");
+            if (!Modifier.isFinal(type.getModifiers())) {
+                // Members are resolved for the declared class; a subclass may resolve them differently
+                line(method, 2, "if (source.getClass() != " + type.getCanonicalName() + ".class) {");
+                line(method, 3, "XmlBuilder.writeSteps(sink, " + node(node) + ".getSteps(), source);");
+                line(method, 3, "return;");
+                line(method, 2, "}");
+            }
+            steps(method, node.getSteps(), "source", type, 2);
+            method.append("    }\n");
+            return name;
+        }
+
+        private void steps(StringBuilder code, List<MappingPlan.Step> steps, String source, Class<?> type, int level) {
+            for (MappingPlan.Step step : steps) {
+                if (step instanceof MappingPlan.LeafStep) {
+                    MappingPlan.LeafStep leaf = (MappingPlan.LeafStep) step;
+                    String value = "v" + variables++;
+                    line(code, level, "Object " + value + " = " + read(source, type, leaf.getApiFieldName()).expression + ";");
+                    line(code, level, "if (" + value + " != null) sink.leaf(" + literal(leaf.getXmlElementName()) + ", " + value + ", "
+                            + converter(leaf.getConverter()) + ");");
+                } else if (step instanceof MappingPlan.ContainerStep) {
+                    MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                    line(code, level, "sink.startElement(" + literal(container.getElementName()) + ");");
+                    steps(code, container.getSteps(), source, type, level);
+                    line(code, level, "sink.endElement();");
+                } else if (step instanceof MappingPlan.CollectionStep) {
+                    collection(code, (MappingPlan.CollectionStep) step, source, type, level);
+                }
+            }
+        }
+
+        private void collection(StringBuilder code, MappingPlan.CollectionStep collection, String source, Class<?> type, int level) {
+            Read read = read(source, type, collection.getApiFieldName());
+            String list = "l" + variables++;
+            String item = "i" + variables++;
+            MappingPlan.Node itemNode = collection.getItem();
+
+            String items = "t" + variables++;
+
+            line(code, level, "Object " + list + " = " + read.expression + ";");
+            line(code, level, "if (" + list + " != null) try {");
+            line(code, level + 1, "java.util.Iterator<?> " + items + " = XmlBuilder.iterate(" + list + ");");
+            line(code, level + 1, "sink.startElement(" + literal(collection.getContainerName()) + ");");
+            line(code, level + 1, "while (" + items + ".hasNext()) {");
+            line(code, level + 2, "Object " + item + " = " + items + ".next();");
+            line(code, level + 2, "if (" + item + " == null) continue;");
+            if (collection.isScalar()) {
+                line(code, level + 2, "sink.leaf(" + literal(itemNode.getElementName()) + ", " + item + ", "
+                        + converter(collection.getItemConverter()) + ");");
+            } else {
+                Class<?> itemType = getElementClass(read.genericType);
+                String method = itemMethod(itemNode, itemType);
+                line(code, level + 2, "sink.startElement(" + literal(itemNode.getElementName()) + ");");
+                if (itemType == Object.class) {
+                    line(code, level + 2, method + "(" + item + ", sink);");
+                } else {
+                    // Items of an unexpected class are interpreted rather than failing the cast
+                    line(code, level + 2, "if (" + item + " instanceof " + itemType.getCanonicalName() + ") "
+                            + method + "((" + itemType.getCanonicalName() + ") " + item + ", sink);");
+                    line(code, level + 2, "else XmlBuilder.writeSteps(sink, " + node(itemNode) + ".getSteps(), " + item + ");");
+                }
+                line(code, level + 2, "sink.endElement();");
+            }
+            line(code, level + 1, "}");
+            line(code, level + 1, "sink.endElement();");
+            line(code, level, "} finally {");
+            line(code, level + 1, "XmlBuilder.closeCollection(" + list + ");");
+            line(code, level, "}");
+        }
+
+        /**
+         * Returns the expression reading a property from a source of exactly the given class.
+         *
+         * The member is chosen in the order {@link ValueAccessors} resolves it, so both paths read the same
+         * one: a provider's accessor, a map entry, a record component, the field, then the getter.
+         */
+        private Read read(String source, Class<?> type, String fieldName) {
+            if (type == Object.class) {
+                return new Read("XmlBuilder.getFieldValue(" + source + ", " + literal(fieldName) + ")", Object.class);
+            }
+            Field field = findField(type, fieldName);
+            if (!ValueAccessors.hasProvider(type, fieldName)) {
+                if (Map.class.isAssignableFrom(type)) {
+                    return new Read("((java.util.Map<?, ?>) " + source + ").get(" + literal(fieldName) + ")", Object.class);
+                }
+                if (type.isRecord()) {
+                    for (RecordComponent component : type.getRecordComponents()) {
+                        if (component.getName().equals(fieldName) && isNameable(component.getType())) {
+                            return new Read(source + "." + fieldName + "()", component.getGenericType());
+                        }
+                    }
+                }
+                if (field != null) {
+                    Read read = fieldRead(source, type, field);
+                    if (read != null) {
+                        return read;
+                    }
+                } else {
+                    Method getter = ValueAccessors.findGetter(type, fieldName);
+                    if (getter != null && isNameable(getter.getReturnType())) {
+                        return new Read(source + "." + getter.getName() + "()", getter.getGenericReturnType());
+                    }
+                }
+            }
+            // Left to the accessor, which also fails like the interpreter for a missing or inaccessible member
+            accessors.add(ValueAccessors.forProperty(type, fieldName));
+            return new Read("accessors[" + (accessors.size() - 1) + "].get(" + source + ")", field != null ? field.getGenericType() : Object.class);
+        }
+
+        /**
+         * Returns the expression reading a field through a typed method handle, or null if the field cannot be read that way.
+         */
+        private Read fieldRead(String source, Class<?> type, Field field) {
+            if (Modifier.isStatic(field.getModifiers())) {
+                return null;
+            }
+            Class<?> valueType = isNameable(field.getType()) ? field.getType() : Object.class;
+            MethodHandle getter;
+            try {
+                getter = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup()).unreflectGetter(field)
+                        .asType(MethodType.methodType(valueType, type));
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+            handles.add(getter);
+            String cast = valueType.isPrimitive() ? valueType.getName() : valueType.getCanonicalName();
+            return new Read("(" + cast + ") H" + (handles.size() - 1) + ".invokeExact(" + source + ")", field.getGenericType());
+        }
+
+        private static boolean isNameable(Class<?> type) {
+            return type.isPrimitive() || isAccessible(type);
+        }
+
+        private String node(MappingPlan.Node node) {
+            nodes.add(node);
+            return "nodes[" + (nodes.size() - 1) + "]";
+        }
+
+        private String converter(ValueConverter converter) {
+            converters.add(converter);
+            return "converters[" + (converters.size() - 1) + "]";
+        }
+
+        /**
+         * Quotes a string as a Java literal.
+         */
+        private static String literal(String value) {
+            StringBuilder literal = new StringBuilder("\"");
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == '"' || c == '\\') {
+                    literal.append('\\').append(c);
+                } else if (c < 0x20 || c > 0x7e) {
+                    literal.append(String.format("\\u%04x", (int) c));
+                } else {
+                    literal.append(c);
+                }
+            }
+            return literal.append('"').toString();
+        }
+
+        private static void line(StringBuilder code, int level, String text) {
+            for (int i = 0; i < level; i++) {
+                code.append("    ");
+            }
+            code.append(text).append('\n');
+        }
+    }
+
+    /**
+     * Expression reading a field, with the static type it produces.
+     */
+    private static final class Read {
+        private final String expression;
+        private final Type genericType;
+
+        private Read(String expression, Type genericType) {
+            this.expression = expression;
+            this.genericType = genericType;
+        }
+    }
+
+    /**
+     * Gets the item class of a {@code List<X>} type if generated code can name it, otherwise Object.
+     */
+    private static Class<?> getElementClass(Type listType) {
+        if (listType instanceof ParameterizedType) {
+            Type[] arguments = ((ParameterizedType) listType).getActualTypeArguments();
+            if (arguments.length == 1 && arguments[0] instanceof Class && isAccessible((Class<?>) arguments[0])) {
+                return (Class<?>) arguments[0];
+            }
+        }
+        return Object.class;
+    }
+
+    /**
+     * Searches for a field in a class and its superclasses.
+     */
+    private static Field findField(Class<?> type, String fieldName) {
+        for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(fieldName)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+}
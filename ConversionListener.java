@@ -0,0 +1,35 @@
+/**
+ * Receives instrumentation from conversions, e.g. to feed a metrics system.
+ *
+ * All methods have empty defaults. Passing {@link #NOOP} (the default everywhere) disables
+ * instrumentation entirely: no timers are read and no metrics objects are created.
+ * Implementations must be thread-safe when shared between concurrent conversions.
+ */
+public interface ConversionListener {
+
+    /**
+     * Listener that ignores everything; conversions using it run uninstrumented.
+     */
+    ConversionListener NOOP = new ConversionListener() {
+    };
+
+    /**
+     * Called once after a conversion completed.
+     *
+     * @param plan    The plan used for the conversion.
+     * @param metrics Timings and counters of the conversion; only valid during the call.
+     */
+    default void onConversion(MappingPlan plan, ConversionMetrics metrics) {
+    }
+
+    /**
+     * Called when a value could not be converted, before the failure is handled.
+     *
+     * @param plan    The plan used for the conversion.
+     * @param mapping The mapping row whose value failed.
+     * @param value   The unconverted value.
+     * @param cause   The conversion error.
+     */
+    default void onConversionFailure(MappingPlan plan, ExcelMappingReader.XmlMapping mapping, Object value, Exception cause) {
+    }
+}
@@ -0,0 +1,186 @@
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Timings and counters collected during one instrumented conversion.
+ *
+ * Stage timings do not overlap: field extraction and type conversion are measured around each
+ * value, tree building is the remaining time spent walking the plan and emitting elements, and
+ * serialization is the time spent turning a DOM into text. When streaming, elements are written
+ * while the tree is walked, so writing is part of tree building and serialization is zero.
+ *
+ * A lenient conversion uses the same object to carry its {@link ConversionReport} and the object path
+ * of the value being written; without a listener it reads no timers.
+ */
+public final class ConversionMetrics {
+
+    private final MappingPlan plan;
+    private final ConversionListener listener;
+
+    long extractionNanos;
+    long conversionNanos;
+    long treeBuildNanos;
+    long serializationNanos;
+    long elementsEmitted;
+    long nullsSkipped;
+    private final Map<String, Integer> failuresByGroup = new HashMap<>();
+
+    // Whether stage timings are taken; false when only a report is attached
+    final boolean timed;
+    // Receives failed values instead of them being thrown, or null
+    final ConversionReport report;
+    final long record;
+
+    // Collection fields and item indexes leading to the object being written
+    private String[] pathFields = new String[8];
+    private int[] pathIndexes = new int[8];
+    private int pathDepth;
+
+    ConversionMetrics(MappingPlan plan, ConversionListener listener) {
+        this(plan, listener, null, -1);
+    }
+
+    private ConversionMetrics(MappingPlan plan, ConversionListener listener, ConversionReport report, long record) {
+        this.plan = plan;
+        this.listener = listener;
+        this.timed = listener != ConversionListener.NOOP;
+        this.report = report;
+        this.record = record;
+    }
+
+    /**
+     * Creates metrics for an instrumented conversion, or null if the listener is the no-op listener.
+     */
+    static ConversionMetrics start(MappingPlan plan, ConversionListener listener) {
+        return start(plan, listener, null, -1);
+    }
+
+    /**
+     * Creates metrics for an instrumented or lenient conversion, or null if it is neither.
+     *
+     * @param report The report receiving failed values, or null to throw them.
+     * @param record The position of the response within its batch, or -1.
+     */
+    static ConversionMetrics start(MappingPlan plan, ConversionListener listener, ConversionReport report, long record) {
+        if (listener == null) {
+            listener = ConversionListener.NOOP;
+        }
+        if (listener == ConversionListener.NOOP && report == null) {
+            return null;
+        }
+        return new ConversionMetrics(plan, listener, report, record);
+    }
+
+    /**
+     * Records a failed conversion and notifies the listener.
+     */
+    void conversionFailed(ExcelMappingReader.XmlMapping mapping, Object value, Exception cause) {
+        failuresByGroup.merge(mapping.getGroup(), 1, Integer::sum);
+        listener.onConversionFailure(plan, mapping, value, cause);
+    }
+
+    /**
+     * Enters an item of a collection field while it is written.
+     */
+    void enterItem(String fieldName, int index) {
+        if (pathDepth == pathFields.length) {
+            pathFields = Arrays.copyOf(pathFields, pathDepth * 2);
+            pathIndexes = Arrays.copyOf(pathIndexes, pathDepth * 2);
+        }
+        pathFields[pathDepth] = fieldName;
+        pathIndexes[pathDepth] = index;
+        pathDepth++;
+    }
+
+    /**
+     * Leaves the item entered last.
+     */
+    void exitItem() {
+        pathDepth--;
+    }
+
+    /**
+     * Builds the object path of a field of the current object, e.g. {@code branches[0].teams[2].teamName}.
+     *
+     * @param fieldName The field, or null for the current item itself.
+     */
+    String pathTo(String fieldName) {
+        StringBuilder path = new StringBuilder();
+        for (int i = 0; i < pathDepth; i++) {
+            if (i > 0) path.append('.');
+            path.append(pathFields[i]).append('[').append(pathIndexes[i]).append(']');
+        }
+        if (fieldName != null) {
+            if (path.length() > 0) path.append('.');
+            path.append(fieldName);
+        }
+        return path.toString();
+    }
+
+    /**
+     * Completes the metrics from the total time spent walking the plan and reports them.
+     */
+    void finish(long walkNanos, long serializationNanos) {
+        this.treeBuildNanos = Math.max(0, walkNanos - extractionNanos - conversionNanos);
+        this.serializationNanos = serializationNanos;
+        listener.onConversion(plan, this);
+    }
+
+    /**
+     * Gets the time spent reading fields from the API objects, in nanoseconds.
+     */
+    public long getExtractionNanos() {
+        return extractionNanos;
+    }
+
+    /**
+     * Gets the time spent converting values to XML text, in nanoseconds.
+     */
+    public long getConversionNanos() {
+        return conversionNanos;
+    }
+
+    /**
+     * Gets the time spent walking the plan and emitting elements, in nanoseconds.
+     */
+    public long getTreeBuildNanos() {
+        return treeBuildNanos;
+    }
+
+    /**
+     * Gets the time spent serializing a DOM to text, in nanoseconds.
+     */
+    public long getSerializationNanos() {
+        return serializationNanos;
+    }
+
+    /**
+     * Gets the total time of the conversion, in nanoseconds.
+     */
+    public long getTotalNanos() {
+        return extractionNanos + conversionNanos + treeBuildNanos + serializationNanos;
+    }
+
+    /**
+     * Gets the number of elements written, including containers and collection items.
+     */
+    public long getElementsEmitted() {
+        return elementsEmitted;
+    }
+
+    /**
+     * Gets the number of values skipped because they were null or converted to empty text.
+     */
+    public long getNullsSkipped() {
+        return nullsSkipped;
+    }
+
+    /**
+     * Gets the number of failed conversions per mapping group.
+     */
+    public Map<String, Integer> getFailuresByGroup() {
+        return Collections.unmodifiableMap(failuresByGroup);
+    }
+}
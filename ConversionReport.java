@@ -0,0 +1,192 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Collects the values that could not be converted during lenient conversions, instead of aborting.
+ *
+ * Passing a report to {@link XmlBuilder#writeXml(MappingPlan, Object, java.io.Writer, boolean, ConversionListener, ConversionReport)}
+ * or {@link XmlConversionEngine#convertAll(MappingPlan, Iterable, java.util.function.Consumer, ConversionReport)}
+ * makes a failed value drop out of the document, or be replaced by the default configured for its mapping,
+ * while the error is recorded with the mapping row, the object path of the value and the cause. Records
+ * that fail for any other reason are skipped by the engine and recorded without a mapping.
+ *
+ * Only the first entries are kept so a systematically broken batch cannot exhaust memory; the count
+ * covers all errors. A report is thread-safe and may be shared by the conversions of one batch.
+ */
+public final class ConversionReport {
+
+    private static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private final int maxEntries;
+    private final Function<ExcelMappingReader.XmlMapping, String> defaults;
+    private final List<Entry> entries = new ArrayList<>();
+    private long errorCount;
+
+    /**
+     * Creates a report that omits elements whose value failed and keeps the first 1000 errors.
+     */
+    public ConversionReport() {
+        this(DEFAULT_MAX_ENTRIES, mapping -> null);
+    }
+
+    /**
+     * Creates a report.
+     *
+     * @param maxEntries The number of errors kept with their details.
+     * @param defaults   Gives the text written in place of a failed value of a mapping, or null to omit the element.
+     */
+    public ConversionReport(int maxEntries, Function<ExcelMappingReader.XmlMapping, String> defaults) {
+        if (maxEntries < 0) {
+            throw new IllegalArgumentException("maxEntries must not be negative.");
+        }
+        this.maxEntries = maxEntries;
+        this.defaults = defaults;
+    }
+
+    /**
+     * Gets the errors kept, in the order they occurred.
+     */
+    public synchronized List<Entry> getEntries() {
+        return Collections.unmodifiableList(new ArrayList<>(entries));
+    }
+
+    /**
+     * Gets the number of errors, including those beyond the kept entries.
+     */
+    public synchronized long getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Determines if any error was recorded.
+     */
+    public synchronized boolean hasErrors() {
+        return errorCount > 0;
+    }
+
+    /**
+     * Drops all recorded errors.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        errorCount = 0;
+    }
+
+    /**
+     * Records a value that failed to convert and gives its substitute.
+     *
+     * @return The text to write instead, or null to omit the element.
+     */
+    String conversionFailed(long record, ExcelMappingReader.XmlMapping mapping, String path, Object value, Exception cause) {
+        add(new Entry(record, mapping, path, value, describe(cause)));
+        return defaults.apply(mapping);
+    }
+
+    /**
+     * Records a response that could not be converted at all.
+     */
+    void recordFailed(long record, Exception cause) {
+        add(new Entry(record, null, "", null, describe(cause)));
+    }
+
+    private synchronized void add(Entry entry) {
+        errorCount++;
+        if (entries.size() < maxEntries) {
+            entries.add(entry);
+        }
+    }
+
+    /**
+     * Summarizes an exception and its cause in one line.
+     */
+    private static String describe(Exception cause) {
+        String message = cause.getMessage() != null ? cause.getMessage() : cause.getClass().getName();
+        Throwable inner = cause.getCause();
+        if (inner != null && inner.getMessage() != null) {
+            message += ": " + inner.getMessage();
+        }
+        return message;
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder text = new StringBuilder();
+        text.append(errorCount).append(" conversion error(s)");
+        for (Entry entry : entries) {
+            text.append(System.lineSeparator()).append("  ").append(entry);
+        }
+        if (errorCount > entries.size()) {
+            text.append(System.lineSeparator()).append("  ... ").append(errorCount - entries.size()).append(" more");
+        }
+        return text.toString();
+    }
+
+    /**
+     * One value or record that could not be converted.
+     */
+    public static final class Entry {
+        private final long record;
+        private final ExcelMappingReader.XmlMapping mapping;
+        private final String path;
+        private final Object value;
+        private final String message;
+
+        private Entry(long record, ExcelMappingReader.XmlMapping mapping, String path, Object value, String message) {
+            this.record = record;
+            this.mapping = mapping;
+            this.path = path;
+            this.value = value;
+            this.message = message;
+        }
+
+        /**
+         * Gets the position of the response within its batch, or -1 for a single conversion.
+         */
+        public long getRecord() {
+            return record;
+        }
+
+        /**
+         * Gets the mapping row of the value, or null if the whole record failed.
+         */
+        public ExcelMappingReader.XmlMapping getMapping() {
+            return mapping;
+        }
+
+        /**
+         * Gets the path of the value within the response, e.g. {@code branches[0].teams[2].teamName}.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the value that failed, or null if the whole record failed.
+         */
+        public Object getValue() {
+            return value;
+        }
+
+        /**
+         * Gets the error message, including that of its cause.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder();
+            if (record >= 0) {
+                text.append("record ").append(record).append(": ");
+            }
+            if (mapping != null) {
+                text.append(mapping.getGroup()).append('.').append(mapping.getApiFieldName())
+                        .append(" at ").append(path).append(" = '").append(value).append("': ");
+            }
+            return text.append(message).toString();
+        }
+    }
+}
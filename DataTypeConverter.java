@@ -1,5 +1,42 @@
+import java.io.IOException;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Converts API values to XML text.
+ *
+ * Supported data types (case-insensitive, optionally prefixed with {@code xs:}): string, integer,
+ * long, float, double, boolean, decimal, date, dateTime and enum. Decimal, date and dateTime accept
+ * a pattern in parentheses, e.g. {@code decimal(#,##0.00)} or {@code date(dd/MM/yyyy)}; without one
+ * they are written in their XML Schema lexical form. Any other type is written with {@code toString()}.
+ * {@link #parserFor(String, Class)} reads such text back into Java values for {@link XmlObjectReader}.
+ */
 public class DataTypeConverter {
 
+    // Resolved converters per "apiDataType|xmlDataType" pair, as written in the mapping sheet
+    private static final Map<String, ValueConverter> CONVERTERS = new ConcurrentHashMap<>();
+
+    // Parsed data type names; formatters are shared per pattern
+    private static final Map<String, TypeSpec> TYPE_SPECS = new ConcurrentHashMap<>();
+    private static final Map<String, DateTimeFormatter> DATE_TIME_FORMATTERS = new ConcurrentHashMap<>();
+    private static final Map<String, ThreadLocal<DecimalFormat>> DECIMAL_FORMATS = new ConcurrentHashMap<>();
+
     /**
      * Converts a value from API data type to XML data type.
      *
@@ -11,49 +48,211 @@ public class DataTypeConverter {
      */
     public static String convert(Object value, String apiDataType, String xmlDataType) throws IllegalArgumentException {
         if (value == null) return null;
+        return forTypes(apiDataType, xmlDataType).convert(value);
+    }
 
-        try {
-            // First, ensure the value matches the API data type
-            Object apiTypedValue = parseValue(value, apiDataType);
+    /**
+     * Returns the converter for a pair of data types, resolving it on first use.
+     *
+     * @param apiDataType The data type of the API field.
+     * @param xmlDataType The desired data type in XML.
+     * @return A thread-safe converter for the pair.
+     * @throws IllegalArgumentException if a declared format pattern is invalid.
+     */
+    public static ValueConverter forTypes(String apiDataType, String xmlDataType) {
+        String key = apiDataType + "|" + xmlDataType;
+        ValueConverter converter = CONVERTERS.get(key);
+        if (converter == null) {
+            converter = CONVERTERS.computeIfAbsent(key, k -> resolve(apiDataType, xmlDataType));
+        }
+        return converter;
+    }
+
+    /**
+     * Determines if a data type is a known simple type rather than a mapped object.
+     */
+    public static boolean isSimpleType(String dataType) {
+        return TypeSpec.of(dataType).kind != Kind.OTHER;
+    }
+
+    /**
+     * Resolves a parser reading XML text written with the given XML data type back into a Java type.
+     * Patterns declared on decimal, date and dateTime types are honoured; empty text is not accepted.
+     *
+     * @param xmlDataType The data type of the XML element, as written in the mapping sheet.
+     * @param targetType  The Java type to produce, e.g. the type of the API field.
+     * @return A thread-safe parser that throws IllegalArgumentException for text it cannot read.
+     * @throws IllegalArgumentException if the target type is not supported.
+     */
+    static Function<String, Object> parserFor(String xmlDataType, Class<?> targetType) {
+        TypeSpec xml = TypeSpec.of(xmlDataType);
+        Class<?> type = MethodType.methodType(targetType).wrap().returnType();
+        Function<Object, Object> target = targetParser(type);
+        return text -> {
+            try {
+                return target.apply(readValue(text, xml));
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Error parsing value: " + text + " from " + xmlDataType + " to " + type.getSimpleName(), e);
+            }
+        };
+    }
+
+    /**
+     * Resolves a check that XML text lies in the lexical space of an XML data type, honouring its pattern.
+     *
+     * @param xmlDataType The data type of the XML element, as written in the mapping sheet.
+     * @return A parser that throws IllegalArgumentException for invalid text, or null if any text is valid.
+     */
+    static Function<String, Object> validatorFor(String xmlDataType) {
+        switch (TypeSpec.of(xmlDataType).kind) {
+            case INTEGER:
+                return parserFor(xmlDataType, Integer.class);
+            case LONG:
+                return parserFor(xmlDataType, Long.class);
+            case FLOAT:
+                return parserFor(xmlDataType, Float.class);
+            case DOUBLE:
+                return parserFor(xmlDataType, Double.class);
+            case BOOLEAN:
+                return parserFor(xmlDataType, Boolean.class);
+            case DECIMAL:
+                return parserFor(xmlDataType, BigDecimal.class);
+            case DATE:
+                return parserFor(xmlDataType, LocalDate.class);
+            case DATETIME:
+                return parserFor(xmlDataType, OffsetDateTime.class);
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Reads XML text into the value the XML data type describes, using its pattern if declared.
+     */
+    private static Object readValue(String text, TypeSpec xml) {
+        switch (xml.kind) {
+            case DECIMAL:
+                return xml.decimalFormat != null ? toBigDecimal(text, xml) : text;
+            case DATE:
+                return xml.dateTimeFormatter != null ? toLocalDate(text, xml) : text;
+            case DATETIME:
+                return xml.dateTimeFormatter != null ? toDateTime(text, xml) : text;
+            default:
+                return text;
+        }
+    }
+
+    /**
+     * Picks the conversion from a read XML value to the target Java type.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Function<Object, Object> targetParser(Class<?> type) {
+        if (type == String.class || type == Object.class || type == CharSequence.class) return Object::toString;
+        if (type == Integer.class) return value -> toBigDecimal(value, null).intValueExact();
+        if (type == Long.class) return value -> toBigDecimal(value, null).longValueExact();
+        if (type == Short.class) return value -> toBigDecimal(value, null).shortValueExact();
+        if (type == Byte.class) return value -> toBigDecimal(value, null).byteValueExact();
+        if (type == BigInteger.class) return value -> toBigDecimal(value, null).toBigIntegerExact();
+        if (type == BigDecimal.class) return value -> toBigDecimal(value, null);
+        if (type == Double.class) return value -> value instanceof Number ? ((Number) value).doubleValue() : Double.parseDouble(value.toString().trim());
+        if (type == Float.class) return value -> value instanceof Number ? ((Number) value).floatValue() : Float.parseFloat(value.toString().trim());
+        if (type == Boolean.class) return value -> parseBoolean(value.toString().trim());
+        if (type == LocalDate.class) return value -> toLocalDate(value, null);
+        if (type == LocalDateTime.class) return value -> toOffsetDateTime(toDateTime(value, null)).toLocalDateTime();
+        if (type == OffsetDateTime.class) return value -> toOffsetDateTime(toDateTime(value, null));
+        if (type == ZonedDateTime.class) return value -> toOffsetDateTime(toDateTime(value, null)).toZonedDateTime();
+        if (type == Instant.class) return value -> toOffsetDateTime(toDateTime(value, null)).toInstant();
+        if (type == Date.class) return value -> Date.from(toOffsetDateTime(toDateTime(value, null)).toInstant());
+        if (type.isEnum()) return value -> Enum.valueOf((Class) type, value.toString().trim());
+        throw new IllegalArgumentException("Unsupported target type: " + type.getName());
+    }
+
+    /**
+     * Parses xs:boolean, which also allows 1 and 0.
+     */
+    private static Boolean parseBoolean(String text) {
+        if (text.equals("true") || text.equals("1")) return Boolean.TRUE;
+        if (text.equals("false") || text.equals("0")) return Boolean.FALSE;
+        throw new IllegalArgumentException("Not a boolean: " + text);
+    }
+
+    /**
+     * Places a date/time on the time line; local date/times are taken in UTC, as instants are written.
+     */
+    private static OffsetDateTime toOffsetDateTime(TemporalAccessor dateTime) {
+        if (dateTime instanceof OffsetDateTime) return (OffsetDateTime) dateTime;
+        if (dateTime instanceof Instant) return ((Instant) dateTime).atOffset(ZoneOffset.UTC);
+        return ((LocalDateTime) dateTime).atOffset(ZoneOffset.UTC);
+    }
 
-            // Then, convert to the XML data type
-            return formatValue(apiTypedValue, xmlDataType);
-        } catch (Exception e) {
-            throw new IllegalArgumentException("Error converting value: " + value + " from " + apiDataType + " to " + xmlDataType, e);
+    /**
+     * Picks the most specialized converter for a pair of data types.
+     */
+    private static ValueConverter resolve(String apiDataType, String xmlDataType) {
+        TypeSpec api = TypeSpec.of(apiDataType);
+        TypeSpec xml = TypeSpec.of(xmlDataType);
+        switch (xml.kind) {
+            case INTEGER:
+            case LONG:
+                return new IntegralConverter(api, xml, apiDataType, xmlDataType);
+            case BOOLEAN:
+                return new BooleanConverter(api, xml, apiDataType, xmlDataType);
+            case STRING:
+            case OTHER:
+                if ((api.kind == Kind.STRING || api.kind == Kind.OTHER) && api.pattern == null) {
+                    return new StringConverter(api, xml, apiDataType, xmlDataType);
+                }
+                return new GenericConverter(api, xml, apiDataType, xmlDataType);
+            default:
+                return new GenericConverter(api, xml, apiDataType, xmlDataType);
         }
     }
 
     /**
      * Parses the value according to the API data type.
      */
-    private static Object parseValue(Object value, String apiDataType) {
-        switch (apiDataType.toLowerCase()) {
-            case "string":
+    private static Object parseValue(Object value, TypeSpec api) {
+        switch (api.kind) {
+            case STRING:
                 return value.toString();
-            case "integer":
+            case INTEGER:
                 if (value instanceof Number) {
                     return ((Number) value).intValue();
                 } else {
                     return Integer.parseInt(value.toString());
                 }
-            case "float":
+            case LONG:
+                if (value instanceof Number) {
+                    return ((Number) value).longValue();
+                } else {
+                    return Long.parseLong(value.toString());
+                }
+            case FLOAT:
                 if (value instanceof Number) {
                     return ((Number) value).floatValue();
                 } else {
                     return Float.parseFloat(value.toString());
                 }
-            case "double":
+            case DOUBLE:
                 if (value instanceof Number) {
                     return ((Number) value).doubleValue();
                 } else {
                     return Double.parseDouble(value.toString());
                 }
-            case "boolean":
+            case BOOLEAN:
                 if (value instanceof Boolean) {
                     return value;
                 } else {
                     return Boolean.parseBoolean(value.toString());
                 }
+            case DECIMAL:
+                return toBigDecimal(value, api);
+            case DATE:
+                return toLocalDate(value, api);
+            case DATETIME:
+                return toDateTime(value, api);
+            case ENUM:
+                return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
             default:
                 return value.toString();
         }
@@ -62,36 +261,481 @@ public class DataTypeConverter {
     /**
      * Formats the value according to the XML data type.
      */
-    private static String formatValue(Object value, String xmlDataType) {
-        switch (xmlDataType.toLowerCase()) {
-            case "string":
+    private static String formatValue(Object value, TypeSpec xml) {
+        switch (xml.kind) {
+            case STRING:
                 return value.toString();
-            case "integer":
+            case INTEGER:
                 if (value instanceof Number) {
                     return String.valueOf(((Number) value).intValue());
                 } else {
                     return String.valueOf(Integer.parseInt(value.toString()));
                 }
-            case "float":
+            case LONG:
+                if (value instanceof Number) {
+                    return String.valueOf(((Number) value).longValue());
+                } else {
+                    return String.valueOf(Long.parseLong(value.toString()));
+                }
+            case FLOAT:
                 if (value instanceof Number) {
                     return String.valueOf(((Number) value).floatValue());
                 } else {
                     return String.valueOf(Float.parseFloat(value.toString()));
                 }
-            case "double":
+            case DOUBLE:
                 if (value instanceof Number) {
                     return String.valueOf(((Number) value).doubleValue());
                 } else {
                     return String.valueOf(Double.parseDouble(value.toString()));
                 }
-            case "boolean":
+            case BOOLEAN:
                 if (value instanceof Boolean) {
                     return String.valueOf(value);
                 } else {
                     return String.valueOf(Boolean.parseBoolean(value.toString()));
                 }
+            case DECIMAL: {
+                BigDecimal decimal = toBigDecimal(value, null);
+                return xml.decimalFormat != null ? xml.decimalFormat.get().format(decimal) : decimal.toPlainString();
+            }
+            case DATE: {
+                LocalDate date = toLocalDate(value, null);
+                return xml.dateTimeFormatter != null ? xml.dateTimeFormatter.format(date) : DateTimeFormatter.ISO_LOCAL_DATE.format(date);
+            }
+            case DATETIME:
+                return formatDateTime(toDateTime(value, null), xml.dateTimeFormatter);
+            case ENUM:
+                return value instanceof Enum ? ((Enum<?>) value).name() : value.toString();
             default:
                 return value.toString();
         }
     }
+
+    /**
+     * Converts a number or its text to a BigDecimal without going through double.
+     */
+    private static BigDecimal toBigDecimal(Object value, TypeSpec api) {
+        if (value instanceof BigDecimal) return (BigDecimal) value;
+        if (value instanceof BigInteger) return new BigDecimal((BigInteger) value);
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return BigDecimal.valueOf(((Number) value).longValue());
+        }
+        if (value instanceof Number) return new BigDecimal(value.toString());
+        String text = value.toString().trim();
+        if (api != null && api.decimalFormat != null) {
+            DecimalFormat format = api.decimalFormat.get();
+            format.setParseBigDecimal(true);
+            try {
+                return (BigDecimal) format.parse(text);
+            } catch (java.text.ParseException e) {
+                throw new IllegalArgumentException("Unparseable decimal: " + text, e);
+            }
+        }
+        return new BigDecimal(text);
+    }
+
+    /**
+     * Converts a date-like value to a LocalDate; instants are taken in UTC.
+     */
+    private static LocalDate toLocalDate(Object value, TypeSpec api) {
+        if (value instanceof LocalDate) return (LocalDate) value;
+        if (value instanceof LocalDateTime) return ((LocalDateTime) value).toLocalDate();
+        if (value instanceof OffsetDateTime) return ((OffsetDateTime) value).toLocalDate();
+        if (value instanceof ZonedDateTime) return ((ZonedDateTime) value).toLocalDate();
+        if (value instanceof Instant) return ((Instant) value).atOffset(ZoneOffset.UTC).toLocalDate();
+        if (value instanceof Date) return Instant.ofEpochMilli(((Date) value).getTime()).atOffset(ZoneOffset.UTC).toLocalDate();
+        String text = value.toString().trim();
+        DateTimeFormatter formatter = api != null && api.dateTimeFormatter != null ? api.dateTimeFormatter : DateTimeFormatter.ISO_LOCAL_DATE;
+        return LocalDate.parse(text, formatter);
+    }
+
+    /**
+     * Converts a date/time value to an Instant, OffsetDateTime or LocalDateTime.
+     */
+    private static TemporalAccessor toDateTime(Object value, TypeSpec api) {
+        if (value instanceof Instant || value instanceof OffsetDateTime || value instanceof LocalDateTime) return (TemporalAccessor) value;
+        if (value instanceof ZonedDateTime) return ((ZonedDateTime) value).toOffsetDateTime();
+        if (value instanceof LocalDate) return ((LocalDate) value).atStartOfDay();
+        if (value instanceof Date) return Instant.ofEpochMilli(((Date) value).getTime());
+        String text = value.toString().trim();
+        DateTimeFormatter formatter = api != null && api.dateTimeFormatter != null ? api.dateTimeFormatter : DateTimeFormatter.ISO_DATE_TIME;
+        return formatter.parseBest(text, OffsetDateTime::from, LocalDateTime::from);
+    }
+
+    /**
+     * Formats a date/time as xs:dateTime, or with the given pattern. Instants are written in UTC.
+     */
+    private static String formatDateTime(TemporalAccessor dateTime, DateTimeFormatter formatter) {
+        if (dateTime instanceof Instant) {
+            if (formatter == null) return DateTimeFormatter.ISO_INSTANT.format(dateTime);
+            dateTime = ((Instant) dateTime).atOffset(ZoneOffset.UTC);
+        }
+        if (formatter != null) return formatter.format(dateTime);
+        if (dateTime instanceof OffsetDateTime) return DateTimeFormatter.ISO_OFFSET_DATE_TIME.format(dateTime);
+        return DateTimeFormatter.ISO_LOCAL_DATE_TIME.format(dateTime);
+    }
+
+    /**
+     * Builds the exception reported for a failed conversion.
+     */
+    private static IllegalArgumentException conversionError(Object value, String apiDataType, String xmlDataType, Exception cause) {
+        return new ConversionError("Error converting value: " + value + " from " + apiDataType + " to " + xmlDataType, cause);
+    }
+
+    /**
+     * A failed conversion. Bad values are data errors that lenient batch runs meet by the thousand, so the
+     * exception skips capturing a stack trace; the message names the value and types, and the cause, if
+     * any, still carries the trace of the failing parser.
+     */
+    private static final class ConversionError extends IllegalArgumentException {
+        private static final long serialVersionUID = 1L;
+
+        private ConversionError(String message, Throwable cause) {
+            super(message, cause);
+        }
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * Data types understood by the converter.
+     */
+    private enum Kind {
+        STRING, INTEGER, LONG, FLOAT, DOUBLE, BOOLEAN, DECIMAL, DATE, DATETIME, ENUM, OTHER;
+
+        static Kind of(String name) {
+            switch (name) {
+                case "string":
+                    return STRING;
+                case "integer":
+                case "int":
+                    return INTEGER;
+                case "long":
+                    return LONG;
+                case "float":
+                    return FLOAT;
+                case "double":
+                    return DOUBLE;
+                case "boolean":
+                    return BOOLEAN;
+                case "decimal":
+                case "bigdecimal":
+                    return DECIMAL;
+                case "date":
+                case "localdate":
+                    return DATE;
+                case "datetime":
+                case "instant":
+                case "localdatetime":
+                case "offsetdatetime":
+                case "zoneddatetime":
+                    return DATETIME;
+                case "enum":
+                    return ENUM;
+                default:
+                    return OTHER;
+            }
+        }
+    }
+
+    /**
+     * A data type name from the mapping sheet, parsed once into its kind and optional format pattern.
+     */
+    private static final class TypeSpec {
+        final Kind kind;
+        final String pattern;
+        final DateTimeFormatter dateTimeFormatter;
+        final ThreadLocal<DecimalFormat> decimalFormat;
+
+        private TypeSpec(Kind kind, String pattern) {
+            this.kind = kind;
+            this.pattern = pattern;
+            this.dateTimeFormatter = pattern != null && (kind == Kind.DATE || kind == Kind.DATETIME)
+                    ? DATE_TIME_FORMATTERS.computeIfAbsent(pattern, p -> DateTimeFormatter.ofPattern(p, Locale.ROOT))
+                    : null;
+            this.decimalFormat = pattern != null && kind == Kind.DECIMAL
+                    ? DECIMAL_FORMATS.computeIfAbsent(pattern, TypeSpec::decimalFormat)
+                    : null;
+        }
+
+        static TypeSpec of(String dataType) {
+            String key = dataType == null ? "" : dataType;
+            TypeSpec spec = TYPE_SPECS.get(key);
+            if (spec == null) {
+                spec = TYPE_SPECS.computeIfAbsent(key, TypeSpec::parse);
+            }
+            return spec;
+        }
+
+        private static TypeSpec parse(String dataType) {
+            String name = dataType.trim();
+            String pattern = null;
+            int open = name.indexOf('(');
+            if (open > 0 && name.endsWith(")")) {
+                pattern = name.substring(open + 1, name.length() - 1);
+                name = name.substring(0, open).trim();
+            }
+            name = name.toLowerCase(Locale.ROOT);
+            if (name.startsWith("xs:")) {
+                name = name.substring(3);
+            }
+            return new TypeSpec(Kind.of(name), pattern);
+        }
+
+        private static ThreadLocal<DecimalFormat> decimalFormat(String pattern) {
+            // Validate eagerly so a bad pattern fails when the plan is compiled; DecimalFormat itself is not thread-safe
+            new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(Locale.ROOT));
+            return ThreadLocal.withInitial(() -> new DecimalFormat(pattern, DecimalFormatSymbols.getInstance(Locale.ROOT)));
+        }
+    }
+
+    /**
+     * Converts through the API type and then the XML type, exactly as declared.
+     *
+     * Text that cannot be a number of the type it is parsed as is rejected up front, so lenient runs
+     * over bad numeric data do not throw and catch a NumberFormatException per value. Text that only
+     * fails while parsing, such as dates, patterned decimals or out-of-range numbers, still does.
+     */
+    private static class GenericConverter implements ValueConverter {
+        final TypeSpec api;
+        final TypeSpec xml;
+        final String apiDataType;
+        final String xmlDataType;
+
+        GenericConverter(TypeSpec api, TypeSpec xml, String apiDataType, String xmlDataType) {
+            this.api = api;
+            this.xml = xml;
+            this.apiDataType = apiDataType;
+            this.xmlDataType = xmlDataType;
+        }
+
+        @Override
+        public String convert(Object value) {
+            if (value == null) return null;
+            if (value instanceof String && !isNumberShaped((String) value)) {
+                throw conversionError(value, apiDataType, xmlDataType, null);
+            }
+            try {
+                return formatValue(parseValue(value, api), xml);
+            } catch (Exception e) {
+                throw conversionError(value, apiDataType, xmlDataType, e);
+            }
+        }
+
+        /**
+         * Determines if text may parse as the number it is converted through; false only if it certainly fails.
+         */
+        private boolean isNumberShaped(String text) {
+            Kind kind = api.kind;
+            if (kind == Kind.STRING || kind == Kind.ENUM || kind == Kind.OTHER) {
+                // Text passes through the API type unchanged and is parsed as the XML type
+                kind = xml.kind;
+            } else if (api.pattern != null) {
+                return true;
+            }
+            switch (kind) {
+                case INTEGER:
+                case LONG:
+                    return isNumberText(text, false, false, false);
+                case FLOAT:
+                case DOUBLE:
+                    return isNumberText(text.trim(), true, true, true);
+                case DECIMAL:
+                    return isNumberText(text.trim(), true, true, false);
+                default:
+                    return true;
+            }
+        }
+    }
+
+    /**
+     * Checks text against the lexical form of Integer.parseInt, Double.parseDouble or the BigDecimal
+     * constructor. Forms rare in API data, i.e. non-ASCII digits, NaN, Infinity and hexadecimal
+     * floating point, are accepted and left to the parser.
+     */
+    private static boolean isNumberText(String text, boolean fraction, boolean exponent, boolean typeSuffix) {
+        int length = text.length();
+        int i = 0;
+        if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+            i++;
+        }
+        if (typeSuffix && (text.startsWith("NaN", i) || text.startsWith("Infinity", i)
+                || text.startsWith("0x", i) || text.startsWith("0X", i))) {
+            return true;
+        }
+        int digits = 0;
+        for (; i < length && isDigit(text.charAt(i)); i++) {
+            digits++;
+        }
+        if (fraction && i < length && text.charAt(i) == '.') {
+            for (i++; i < length && isDigit(text.charAt(i)); i++) {
+                digits++;
+            }
+        }
+        if (digits == 0) {
+            return i < length && text.charAt(i) >= 0x80;
+        }
+        if (exponent && i < length && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            i++;
+            if (i < length && (text.charAt(i) == '-' || text.charAt(i) == '+')) {
+                i++;
+            }
+            int exponentDigits = 0;
+            for (; i < length && isDigit(text.charAt(i)); i++) {
+                exponentDigits++;
+            }
+            if (exponentDigits == 0) {
+                return i < length && text.charAt(i) >= 0x80;
+            }
+        }
+        if (typeSuffix && i < length && "fFdD".indexOf(text.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == length || text.charAt(i) >= 0x80;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Text to text: returns Strings as-is.
+     */
+    private static final class StringConverter extends GenericConverter {
+        StringConverter(TypeSpec api, TypeSpec xml, String apiDataType, String xmlDataType) {
+            super(api, xml, apiDataType, xmlDataType);
+        }
+
+        @Override
+        public String convert(Object value) {
+            if (value == null) return null;
+            return value instanceof String ? (String) value : value.toString();
+        }
+    }
+
+    /**
+     * Any type to xs:integer or xs:long; numbers are written as digits without boxing or an intermediate String.
+     */
+    private static final class IntegralConverter extends GenericConverter {
+        IntegralConverter(TypeSpec api, TypeSpec xml, String apiDataType, String xmlDataType) {
+            super(api, xml, apiDataType, xmlDataType);
+        }
+
+        @Override
+        public boolean isDirect() {
+            return true;
+        }
+
+        @Override
+        public void write(Object value, XmlTextOutput out) throws IOException {
+            out.appendLong(toLong(value));
+        }
+
+        @Override
+        public String convert(Object value) {
+            if (value == null) return null;
+            return Long.toString(toLong(value));
+        }
+
+        private long toLong(Object value) {
+            boolean intRange = xml.kind == Kind.INTEGER;
+            if (value instanceof String && api.pattern == null && (api.kind == Kind.STRING || api.kind == Kind.OTHER || api.kind == xml.kind)) {
+                return parseIntegral((String) value, intRange);
+            }
+            try {
+                Object number = value;
+                if (!(value instanceof Number) || api.kind == Kind.STRING || api.kind == Kind.OTHER) {
+                    number = parseValue(value, api);
+                    if (!(number instanceof Number)) {
+                        return intRange ? Integer.parseInt(number.toString()) : Long.parseLong(number.toString());
+                    }
+                }
+                Number n = (Number) number;
+                switch (api.kind) {
+                    case FLOAT:
+                        return intRange ? (int) n.floatValue() : (long) n.floatValue();
+                    case DOUBLE:
+                        return intRange ? (int) n.doubleValue() : (long) n.doubleValue();
+                    default:
+                        return intRange ? n.intValue() : n.longValue();
+                }
+            } catch (Exception e) {
+                throw conversionError(value, apiDataType, xmlDataType, e);
+            }
+        }
+
+        /**
+         * Parses decimal digits like Integer.parseInt or Long.parseLong, but reports bad text without
+         * throwing and catching a NumberFormatException first.
+         */
+        private long parseIntegral(String text, boolean intRange) {
+            int length = text.length();
+            int i = 0;
+            boolean negative = false;
+            if (length > 0 && (text.charAt(0) == '-' || text.charAt(0) == '+')) {
+                negative = text.charAt(0) == '-';
+                i = 1;
+            }
+            if (i == length) {
+                throw conversionError(text, apiDataType, xmlDataType, null);
+            }
+            long min = intRange ? (negative ? Integer.MIN_VALUE : -Integer.MAX_VALUE) : (negative ? Long.MIN_VALUE : -Long.MAX_VALUE);
+            long result = 0; // accumulated negatively so the minimum fits
+            for (; i < length; i++) {
+                char c = text.charAt(i);
+                if (c >= 0x80) {
+                    // Non-ASCII digits are rare; leave them to the JDK
+                    try {
+                        return intRange ? Integer.parseInt(text) : Long.parseLong(text);
+                    } catch (NumberFormatException e) {
+                        throw conversionError(text, apiDataType, xmlDataType, e);
+                    }
+                }
+                int digit = c - '0';
+                if (digit < 0 || digit > 9 || result < min / 10 || result * 10 < min + digit) {
+                    throw conversionError(text, apiDataType, xmlDataType, null);
+                }
+                result = result * 10 - digit;
+            }
+            return negative ? result : -result;
+        }
+    }
+
+    /**
+     * Any type to xs:boolean, written from constant literals.
+     */
+    private static final class BooleanConverter extends GenericConverter {
+        BooleanConverter(TypeSpec api, TypeSpec xml, String apiDataType, String xmlDataType) {
+            super(api, xml, apiDataType, xmlDataType);
+        }
+
+        @Override
+        public boolean isDirect() {
+            return true;
+        }
+
+        @Override
+        public void write(Object value, XmlTextOutput out) throws IOException {
+            out.appendPlain(convert(value));
+        }
+
+        @Override
+        public String convert(Object value) {
+            if (value == null) return null;
+            if (value instanceof Boolean) {
+                return ((Boolean) value) ? "true" : "false";
+            }
+            try {
+                Object parsed = parseValue(value, api);
+                boolean result = parsed instanceof Boolean ? (Boolean) parsed : Boolean.parseBoolean(parsed.toString());
+                return result ? "true" : "false";
+            } catch (Exception e) {
+                throw conversionError(value, apiDataType, xmlDataType, e);
+            }
+        }
+    }
 }
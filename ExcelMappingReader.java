@@ -1,11 +1,32 @@
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
 import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.ss.util.CellReference;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.eventusermodel.XSSFSheetXMLHandler;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFComment;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import javax.xml.parsers.ParserConfigurationException;
 
 public class ExcelMappingReader {
 
@@ -61,33 +82,109 @@ public class ExcelMappingReader {
      * @throws IOException If an I/O error occurs.
      */
     public static List<XmlMapping> readMappings(String excelFilePath) throws IOException {
+        try (FileInputStream fis = new FileInputStream(new File(excelFilePath))) {
+            return readMappings(fis);
+        }
+    }
+
+    /**
+     * Reads an Excel workbook from a stream and returns a list of XmlMapping objects.
+     *
+     * @param in The workbook contents.
+     * @return List of XmlMapping.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static List<XmlMapping> readMappings(InputStream in) throws IOException {
         List<XmlMapping> mappings = new ArrayList<>();
-        FileInputStream fis = new FileInputStream(new File(excelFilePath));
-        Workbook workbook = new XSSFWorkbook(fis);
-        Sheet sheet = workbook.getSheetAt(0); // Assuming data is in the first sheet
+        try (Workbook workbook = new XSSFWorkbook(in)) {
+            Sheet sheet = workbook.getSheetAt(0); // Assuming data is in the first sheet
 
-        // Iterate over rows, skipping the header
-        for (int i = 1; i <= sheet.getLastRowNum(); i++) { // Start from row 1 to skip header
-            Row row = sheet.getRow(i);
-            if (row == null) continue; // Skip empty rows
+            // Iterate over rows, skipping the header
+            for (int i = 1; i <= sheet.getLastRowNum(); i++) { // Start from row 1 to skip header
+                Row row = sheet.getRow(i);
+                if (row == null) continue; // Skip empty rows
 
-            String group = getCellValueAsString(row.getCell(0));
-            String apiFieldName = getCellValueAsString(row.getCell(1));
-            String apiDataType = getCellValueAsString(row.getCell(2));
-            String xmlElementName = getCellValueAsString(row.getCell(3));
-            String xmlDataType = getCellValueAsString(row.getCell(4));
-            String xmlPath = getCellValueAsString(row.getCell(5));
+                String group = getCellValueAsString(row.getCell(0));
+                String apiFieldName = getCellValueAsString(row.getCell(1));
+                String apiDataType = getCellValueAsString(row.getCell(2));
+                String xmlElementName = getCellValueAsString(row.getCell(3));
+                String xmlDataType = getCellValueAsString(row.getCell(4));
+                String xmlPath = getCellValueAsString(row.getCell(5));
 
-            if (apiFieldName.isEmpty()) continue; // Skip if API Field Name is empty
+                if (apiFieldName.isEmpty()) continue; // Skip if API Field Name is empty
 
-            mappings.add(new XmlMapping(group, apiFieldName, apiDataType, xmlElementName, xmlDataType, xmlPath));
+                mappings.add(new XmlMapping(group, apiFieldName, apiDataType, xmlElementName, xmlDataType, xmlPath));
+            }
         }
-
-        workbook.close();
-        fis.close();
         return mappings;
     }
 
+    /**
+     * Reads the Excel file with POI's streaming SAX API and returns a list of XmlMapping objects.
+     * Produces the same mappings as {@link #readMappings(String)} without materializing the workbook.
+     *
+     * @param excelFilePath Path to the Excel file.
+     * @return List of XmlMapping.
+     * @throws IOException If an I/O error occurs or the file is not a valid workbook.
+     */
+    public static List<XmlMapping> readMappingsStreaming(String excelFilePath) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(new File(excelFilePath), PackageAccess.READ);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Invalid workbook: " + excelFilePath, e);
+        }
+        try {
+            return readMappingsStreaming(pkg);
+        } finally {
+            pkg.revert(); // Read-only packages are released with revert() rather than close()
+        }
+    }
+
+    /**
+     * Reads an Excel workbook from a stream with POI's streaming SAX API and returns a list of XmlMapping objects.
+     *
+     * @param in The workbook contents.
+     * @return List of XmlMapping.
+     * @throws IOException If an I/O error occurs or the stream is not a valid workbook.
+     */
+    public static List<XmlMapping> readMappingsStreaming(InputStream in) throws IOException {
+        OPCPackage pkg;
+        try {
+            pkg = OPCPackage.open(in);
+        } catch (InvalidFormatException e) {
+            throw new IOException("Invalid workbook", e);
+        }
+        try {
+            return readMappingsStreaming(pkg);
+        } finally {
+            pkg.revert();
+        }
+    }
+
+    /**
+     * Parses the first sheet of an opened package row by row.
+     */
+    private static List<XmlMapping> readMappingsStreaming(OPCPackage pkg) throws IOException {
+        try {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            StylesTable styles = reader.getStylesTable();
+            MappingRowHandler rowHandler = new MappingRowHandler();
+
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) return rowHandler.mappings;
+            try (InputStream sheet = sheets.next()) { // Assuming data is in the first sheet
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new MappingSheetHandler(styles, strings, rowHandler));
+                parser.parse(new InputSource(sheet));
+            }
+            return rowHandler.mappings;
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Unable to read mapping sheet", e);
+        }
+    }
+
     /**
      * Helper method to get cell value as String.
      *
@@ -101,13 +198,9 @@ public class ExcelMappingReader {
                 return cell.getStringCellValue().trim();
             case NUMERIC:
                 if (DateUtil.isCellDateFormatted(cell)) {
-                    return cell.getDateCellValue().toString(); // Customize date format as needed
+                    return formatDate(cell.getLocalDateTimeCellValue());
                 } else {
-                    double num = cell.getNumericCellValue();
-                    if (num == (long) num)
-                        return String.valueOf((long) num);
-                    else
-                        return String.valueOf(num);
+                    return formatNumber(cell.getNumericCellValue());
                 }
             case BOOLEAN:
                 return String.valueOf(cell.getBooleanCellValue());
@@ -118,4 +211,92 @@ public class ExcelMappingReader {
                 return "";
         }
     }
+
+    /**
+     * Formats a date cell using the xs:date / xs:dateTime lexical forms rather than Date.toString().
+     */
+    private static String formatDate(LocalDateTime dateTime) {
+        return dateTime.toLocalTime().equals(LocalTime.MIDNIGHT)
+                ? dateTime.toLocalDate().toString()
+                : dateTime.toString();
+    }
+
+    /**
+     * Formats a numeric cell, dropping the fraction of whole numbers.
+     */
+    private static String formatNumber(double num) {
+        if (num == (long) num)
+            return String.valueOf((long) num);
+        else
+            return String.valueOf(num);
+    }
+
+    /**
+     * Formats numeric cells seen by the streaming reader the same way {@link #getCellValueAsString(Cell)} does.
+     */
+    private static final class MappingCellFormatter extends DataFormatter {
+        @Override
+        public String formatRawCellContents(double value, int formatIndex, String formatString) {
+            if (DateUtil.isADateFormat(formatIndex, formatString) && DateUtil.isValidExcelDate(value)) {
+                return formatDate(DateUtil.getLocalDateTime(value));
+            }
+            return formatNumber(value);
+        }
+    }
+
+    /**
+     * Sheet parser telling the row handler which cells are booleans, which POI reports as "TRUE"/"FALSE".
+     */
+    private static final class MappingSheetHandler extends XSSFSheetXMLHandler {
+        private final MappingRowHandler rowHandler;
+
+        private MappingSheetHandler(StylesTable styles, ReadOnlySharedStringsTable strings, MappingRowHandler rowHandler) {
+            super(styles, null, strings, rowHandler, new MappingCellFormatter(), true);
+            this.rowHandler = rowHandler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+            if ("c".equals(localName)) {
+                rowHandler.booleanCell = "b".equals(attributes.getValue("t"));
+            }
+            super.startElement(uri, localName, qName, attributes);
+        }
+    }
+
+    /**
+     * Collects the six mapping columns of each row as the sheet is parsed.
+     */
+    private static final class MappingRowHandler implements XSSFSheetXMLHandler.SheetContentsHandler {
+        private final List<XmlMapping> mappings = new ArrayList<>();
+        private final String[] values = new String[6];
+        private boolean header;
+        private boolean booleanCell; // the current cell holds a boolean
+
+        @Override
+        public void startRow(int rowNum) {
+            header = rowNum == 0; // Skip the header row
+            Arrays.fill(values, "");
+        }
+
+        @Override
+        public void cell(String cellReference, String formattedValue, XSSFComment comment) {
+            if (header || cellReference == null || formattedValue == null) return;
+            int column = new CellReference(cellReference).getCol();
+            if (column < values.length) {
+                String value = formattedValue.trim();
+                // Booleans read as "true"/"false", like getCellValueAsString gives them
+                if (booleanCell && (value.equals("TRUE") || value.equals("FALSE"))) {
+                    value = value.toLowerCase();
+                }
+                values[column] = value;
+            }
+        }
+
+        @Override
+        public void endRow(int rowNum) {
+            if (header || values[1].isEmpty()) return; // Skip if API Field Name is empty
+            mappings.add(new XmlMapping(values[0], values[1], values[2], values[3], values[4], values[5]));
+        }
+    }
 }
@@ -0,0 +1,191 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Cached, thread-safe getter and setter for a single field of a class.
+ *
+ * Accessors are resolved once per (class, field name) pair into {@link MethodHandle}s and reused
+ * by every thread afterwards, so field reads and writes during conversion do no reflective lookup,
+ * no {@code setAccessible} calls and no exception-driven superclass walks.
+ */
+public final class FieldAccessor implements ValueAccessor {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private static final ClassValue<Map<String, FieldAccessor>> CACHE = new ClassValue<Map<String, FieldAccessor>>() {
+        @Override
+        protected Map<String, FieldAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private final Class<?> owner;
+    private final String fieldName;
+    private final Field field;
+    private final MethodHandle getter; // null if the field does not exist or is not accessible
+    private final MethodHandle setter; // null if the field does not exist or cannot be written
+    private final String inaccessible; // why an existing field cannot be accessed, or null
+
+    private FieldAccessor(Class<?> owner, String fieldName, Field field, MethodHandle getter, MethodHandle setter, String inaccessible) {
+        this.owner = owner;
+        this.fieldName = fieldName;
+        this.field = field;
+        this.getter = getter;
+        this.setter = setter;
+        this.inaccessible = inaccessible;
+    }
+
+    /**
+     * Returns the cached accessor for a field, resolving it on first use.
+     *
+     * @param clazz     The class declaring or inheriting the field.
+     * @param fieldName The field name.
+     * @return The accessor; reading through it fails if the field does not exist.
+     */
+    public static FieldAccessor forField(Class<?> clazz, String fieldName) {
+        Map<String, FieldAccessor> accessors = CACHE.get(clazz);
+        FieldAccessor accessor = accessors.get(fieldName);
+        if (accessor == null) {
+            accessor = accessors.computeIfAbsent(fieldName, name -> resolve(clazz, name));
+        }
+        return accessor;
+    }
+
+    /**
+     * Reads the field from the given object.
+     *
+     * @param target The object to read from.
+     * @return The field value.
+     * @throws NoSuchFieldException if the field does not exist in the target's class hierarchy.
+     */
+    @Override
+    public Object get(Object target) throws NoSuchFieldException {
+        checkAccessible();
+        try {
+            return getter.invokeExact(target);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Error reading field '" + fieldName + "' of " + owner.getName(), t);
+        }
+    }
+
+    /**
+     * Writes the field of the given object.
+     *
+     * @param target The object to write to.
+     * @param value  The new value; primitives are unboxed.
+     * @throws NoSuchFieldException if the field does not exist in the target's class hierarchy.
+     */
+    public void set(Object target, Object value) throws NoSuchFieldException {
+        checkAccessible();
+        if (setter == null) {
+            throw new IllegalStateException("Field '" + fieldName + "' of " + owner.getName() + " is not writable");
+        }
+        try {
+            setter.invokeExact(target, value);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Error writing field '" + fieldName + "' of " + owner.getName(), t);
+        }
+    }
+
+    /**
+     * Determines if the field exists.
+     */
+    public boolean isPresent() {
+        return field != null;
+    }
+
+    /**
+     * Determines if the field exists and can be written, i.e. is accessible and not final.
+     */
+    public boolean isWritable() {
+        return setter != null;
+    }
+
+    /**
+     * Gets the declared type of the field, or null if it does not exist.
+     */
+    public Class<?> getType() {
+        return field != null ? field.getType() : null;
+    }
+
+    /**
+     * Gets the declared generic type of the field, e.g. {@code List<Member>}, or null if it does not exist.
+     */
+    public Type getGenericType() {
+        return field != null ? field.getGenericType() : null;
+    }
+
+    /**
+     * Fails like reflective access would if the field is missing or cannot be accessed.
+     */
+    private void checkAccessible() throws NoSuchFieldException {
+        if (field == null) {
+            throw new NoSuchFieldException("Field '" + fieldName + "' not found in " + owner.getName());
+        }
+        if (getter == null) {
+            throw new InaccessibleObjectException(inaccessible);
+        }
+    }
+
+    /**
+     * Resolves the field once, searching the class and its superclasses.
+     */
+    private static FieldAccessor resolve(Class<?> clazz, String fieldName) {
+        Field field = findField(clazz, fieldName);
+        if (field == null) {
+            return new FieldAccessor(clazz, fieldName, null, null, null, null);
+        }
+        MethodHandles.Lookup lookup;
+        MethodHandle getter;
+        try {
+            lookup = MethodHandles.privateLookupIn(field.getDeclaringClass(), MethodHandles.lookup());
+            getter = lookup.unreflectGetter(field);
+        } catch (IllegalAccessException e) {
+            // Fall back to a plain reflective handle for classes in modules that are not open to us
+            try {
+                field.setAccessible(true);
+            } catch (InaccessibleObjectException denied) {
+                // Reading fails with the same error as reflective access, rather than resolution
+                return new FieldAccessor(clazz, fieldName, field, null, null, denied.getMessage());
+            }
+            lookup = MethodHandles.lookup();
+            try {
+                getter = lookup.unreflectGetter(field);
+            } catch (IllegalAccessException inaccessible) {
+                throw new IllegalStateException("Field '" + fieldName + "' of " + clazz.getName() + " is not accessible", inaccessible);
+            }
+        }
+        MethodHandle setter;
+        try {
+            setter = lookup.unreflectSetter(field).asType(SETTER_TYPE);
+        } catch (IllegalAccessException e) {
+            setter = null; // final fields are read-only
+        }
+        return new FieldAccessor(clazz, fieldName, field, getter.asType(GETTER_TYPE), setter, null);
+    }
+
+    /**
+     * Searches for a field in a class and its superclasses without using exceptions for control flow.
+     */
+    private static Field findField(Class<?> clazz, String fieldName) {
+        for (Class<?> current = clazz; current != null; current = current.getSuperclass()) {
+            for (Field field : current.getDeclaredFields()) {
+                if (field.getName().equals(fieldName)) {
+                    return field;
+                }
+            }
+        }
+        return null;
+    }
+}
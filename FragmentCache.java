@@ -0,0 +1,414 @@
+import java.io.StringWriter;
+import java.io.Writer;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Bounded cache of the XML rendered for collection items that recur across responses.
+ *
+ * Shared reference data such as teams and members is often embedded in many responses. Converting
+ * through a cache renders each item once and splices the remembered text whenever the same item is
+ * met again, at the same place in the same plan. Items are matched by identity or by equals, so the
+ * cache must only be used for items that are not modified while cached, or the stale entries must be
+ * dropped with {@link #invalidate(Object)}. Matched by identity, items are held weakly: a cached fragment
+ * does not keep its item, or the object graph behind it, alive, and is dropped once the item is collected.
+ *
+ * The cache is bounded both by number of entries and by total weight (characters of cached XML) and
+ * evicts the least recently used entries first. A cached item's fragment contains its nested items, so
+ * caching every level stores the same text several times; the cacheable predicate restricts caching to
+ * the levels that actually recur. Hit, miss and eviction counts are kept for tuning.
+ * A cache is thread-safe and may be shared by any number of plans and conversions.
+ */
+public class FragmentCache {
+
+    /**
+     * How cached items are matched.
+     */
+    public enum KeyMode {
+        /** The same object instance, held weakly. */
+        IDENTITY,
+        /** An object equal to the cached one. */
+        EQUALS
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final KeyMode keyMode;
+    private final Predicate<Object> cacheable;
+
+    private final LinkedHashMap<Key, String> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ReferenceQueue<Object> collected = new ReferenceQueue<>();
+    private long weight;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates an identity-keyed cache for all collection items, bounded by entry count only.
+     *
+     * @param maxEntries The maximum number of cached fragments.
+     */
+    public FragmentCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, KeyMode.IDENTITY, item -> true);
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxEntries The maximum number of cached fragments.
+     * @param maxWeight  The maximum number of characters held over all fragments.
+     * @param keyMode    How items are matched.
+     * @param cacheable  Selects the items worth caching, e.g. {@code item -> item instanceof Team}; others are always rendered.
+     */
+    public FragmentCache(int maxEntries, long maxWeight, KeyMode keyMode, Predicate<Object> cacheable) {
+        if (maxEntries < 0 || maxWeight < 0) {
+            throw new IllegalArgumentException("Cache limits must not be negative.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.keyMode = keyMode;
+        this.cacheable = cacheable;
+    }
+
+    /**
+     * Streams the API response as XML, taking collection items from the cache where possible.
+     * The output equals {@link XmlBuilder#writeXml(MappingPlan, Object, Writer, boolean)}.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent) throws Exception {
+        StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+        xmlWriter.startDocument();
+        xmlWriter.startElement(plan.getRootElementName());
+        XmlBuilder.writeSteps(xmlWriter, plan.getRoot().getSteps(), view(plan.getRoot().getSteps(), apiResponse, indent));
+        xmlWriter.endElement();
+        xmlWriter.endDocument();
+    }
+
+    /**
+     * Converts the API response to an XML string, taking collection items from the cache where possible.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @return XML as a String.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public String buildXml(MappingPlan plan, Object apiResponse) throws Exception {
+        StringWriter writer = new StringWriter();
+        writeXml(plan, apiResponse, writer, true);
+        return writer.toString();
+    }
+
+    /**
+     * Drops every fragment rendered for the given item, e.g. after it was modified.
+     *
+     * @param item The item as matched by the key mode.
+     */
+    public synchronized void invalidate(Object item) {
+        expungeCollected();
+        for (Iterator<Map.Entry<Key, String>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Key, String> entry = it.next();
+            if (entry.getKey().matches(item)) {
+                weight -= entry.getValue().length();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Drops all fragments; the statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    /**
+     * Gets the number of items taken from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of cacheable items that had to be rendered.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Gets the fraction of cacheable items taken from the cache, or 0 before the first lookup.
+     */
+    public synchronized double getHitRate() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * Gets the number of fragments evicted to stay within the limits.
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * Gets the number of cached fragments.
+     */
+    public synchronized int getSize() {
+        expungeCollected();
+        return entries.size();
+    }
+
+    /**
+     * Gets the number of characters held over all cached fragments.
+     */
+    public synchronized long getWeight() {
+        expungeCollected();
+        return weight;
+    }
+
+    /**
+     * Returns the source as XmlBuilder should see it for the given steps: the source itself if the steps
+     * hold no item collections, otherwise a snapshot of its values whose item collections yield
+     * {@link CachedItem}s, so every item is written through the cache.
+     */
+    private Object view(List<MappingPlan.Step> steps, Object source, boolean indent) throws Exception {
+        if (!hasItems(steps)) {
+            return source;
+        }
+        Map<String, Object> snapshot = new HashMap<>();
+        capture(steps, source, indent, snapshot);
+        return snapshot;
+    }
+
+    private void capture(List<MappingPlan.Step> steps, Object source, boolean indent, Map<String, Object> snapshot) throws Exception {
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.LeafStep) {
+                String fieldName = ((MappingPlan.LeafStep) step).getApiFieldName();
+                if (!snapshot.containsKey(fieldName)) {
+                    snapshot.put(fieldName, XmlBuilder.getFieldValue(source, fieldName));
+                }
+            } else if (step instanceof MappingPlan.ContainerStep) {
+                capture(((MappingPlan.ContainerStep) step).getSteps(), source, indent, snapshot);
+            } else if (step instanceof MappingPlan.CollectionStep) {
+                MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                if (snapshot.containsKey(collection.getApiFieldName())) continue;
+                Object value = XmlBuilder.getFieldValue(source, collection.getApiFieldName());
+                snapshot.put(collection.getApiFieldName(), value == null || collection.isScalar()
+                        ? value : items(collection.getItem(), value, indent));
+            }
+        }
+    }
+
+    /**
+     * Maps the entries of an item collection lazily to the items XmlBuilder writes; a Stream stays a Stream
+     * so that XmlBuilder still closes it.
+     */
+    private Object items(MappingPlan.Node itemNode, Object value, boolean indent) {
+        if (value instanceof Stream) {
+            return ((Stream<?>) value).map(item -> item(itemNode, item, indent));
+        }
+        Iterator<?> items = XmlBuilder.iterate(value);
+        return new Iterator<Object>() {
+            @Override
+            public boolean hasNext() {
+                return items.hasNext();
+            }
+
+            @Override
+            public Object next() {
+                return item(itemNode, items.next(), indent);
+            }
+        };
+    }
+
+    private Object item(MappingPlan.Node itemNode, Object item, boolean indent) {
+        if (item == null || (!cacheable.test(item) && !hasItems(itemNode.getSteps()))) {
+            return item;
+        }
+        return new CachedItem(itemNode, item, indent);
+    }
+
+    /**
+     * Determines if the steps hold a collection of items, directly or in a container.
+     */
+    private static boolean hasItems(List<MappingPlan.Step> steps) {
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.CollectionStep && !((MappingPlan.CollectionStep) step).isScalar()) {
+                return true;
+            } else if (step instanceof MappingPlan.ContainerStep && hasItems(((MappingPlan.ContainerStep) step).getSteps())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A collection item written from the cache if it was rendered before at the same place, or rendered,
+     * cached and written otherwise.
+     */
+    private final class CachedItem extends XmlBuilder.RenderedItem {
+        private final MappingPlan.Node node;
+        private final Object item;
+        private final boolean indent;
+
+        private CachedItem(MappingPlan.Node node, Object item, boolean indent) {
+            this.node = node;
+            this.item = item;
+            this.indent = indent;
+        }
+
+        @Override
+        void writeTo(StreamingXmlWriter writer) throws Exception {
+            if (!cacheable.test(item)) {
+                write(writer);
+                return;
+            }
+            Key key = new Key(node, writer.getDepth(), indent, item, keyMode == KeyMode.IDENTITY);
+            String fragment = get(key);
+            if (fragment == null) {
+                StringWriter buffer = new StringWriter();
+                StreamingXmlWriter fragmentWriter = new StreamingXmlWriter(buffer, indent, writer.getDepth());
+                write(fragmentWriter);
+                fragmentWriter.flush();
+                fragment = buffer.toString();
+                put(key, fragment);
+            }
+            writer.raw(fragment);
+        }
+
+        private void write(StreamingXmlWriter writer) throws Exception {
+            writer.startElement(node.getElementName());
+            XmlBuilder.writeSteps(writer, node.getSteps(), view(node.getSteps(), item, indent));
+            writer.endElement();
+        }
+    }
+
+    private synchronized String get(Key key) {
+        expungeCollected();
+        String fragment = entries.get(key);
+        if (fragment != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return fragment;
+    }
+
+    private synchronized void put(Key key, String fragment) {
+        expungeCollected();
+        if (fragment.length() > maxWeight || maxEntries == 0) {
+            return;
+        }
+        String replaced = entries.put(key.identity ? key.weak(collected) : key, fragment);
+        weight += fragment.length() - (replaced != null ? replaced.length() : 0);
+        for (Iterator<String> eldest = entries.values().iterator(); entries.size() > maxEntries || weight > maxWeight; ) {
+            weight -= eldest.next().length();
+            eldest.remove();
+            evictions++;
+        }
+    }
+
+    /**
+     * Drops the entries of identity-matched items that were garbage collected.
+     */
+    private void expungeCollected() {
+        for (Reference<?> reference; (reference = collected.poll()) != null; ) {
+            String fragment = entries.remove(((ItemReference) reference).key);
+            if (fragment != null) {
+                weight -= fragment.length();
+            }
+        }
+    }
+
+    /**
+     * Identifies an item rendered at one place of one plan.
+     *
+     * Keys used for lookups hold the item strongly; identity keys stored in the cache hold it weakly.
+     */
+    private static final class Key {
+        private final MappingPlan.Node node;
+        private final int depth;
+        private final boolean indent;
+        private final Object item; // null in a weak key
+        private final ItemReference reference;
+        private final boolean identity;
+        private final int hash;
+
+        private Key(MappingPlan.Node node, int depth, boolean indent, Object item, boolean identity) {
+            this.node = node;
+            this.depth = depth;
+            this.indent = indent;
+            this.item = item;
+            this.reference = null;
+            this.identity = identity;
+            this.hash = Objects.hash(System.identityHashCode(node), depth, indent,
+                    identity ? System.identityHashCode(item) : item.hashCode());
+        }
+
+        private Key(Key key, ReferenceQueue<Object> queue) {
+            this.node = key.node;
+            this.depth = key.depth;
+            this.indent = key.indent;
+            this.item = null;
+            this.reference = new ItemReference(key.item, queue, this);
+            this.identity = key.identity;
+            this.hash = key.hash;
+        }
+
+        /**
+         * Returns a copy of this key holding the item weakly, enqueued once the item is collected.
+         */
+        private Key weak(ReferenceQueue<Object> queue) {
+            return new Key(this, queue);
+        }
+
+        private Object item() {
+            return reference != null ? reference.get() : item;
+        }
+
+        private boolean matches(Object other) {
+            Object current = item();
+            return identity ? current != null && current == other : current.equals(other);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Key)) return false;
+            Key key = (Key) other;
+            return node == key.node && depth == key.depth && indent == key.indent
+                    && identity == key.identity && matches(key.item());
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Weak reference to a cached item that knows the entry to drop once the item is collected.
+     */
+    private static final class ItemReference extends WeakReference<Object> {
+        private final Key key;
+
+        private ItemReference(Object item, ReferenceQueue<Object> queue, Key key) {
+            super(item, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,389 @@
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+/**
+ * Re-converts a mostly unchanged API response by reusing the XML rendered for unchanged collection items.
+ *
+ * Every non-scalar collection item (a branch, a team, a member, ...) is rendered into its own fragment
+ * and remembered with a snapshot of everything that goes into it: the item's leaf values and the
+ * fragments of its own items. On the next conversion an item whose snapshot has the same fingerprint
+ * and holds values of the same classes that are equal is spliced in as is; only changed items, and the
+ * items enclosing them, are converted and serialized again. This works for mutated objects as well as
+ * for freshly deserialized snapshots of the same data, as long as leaf values implement equals.
+ *
+ * Computing a fingerprint still reads every field of the response, which is far cheaper than
+ * converting and writing it. To skip unchanged subtrees entirely, supply a version key function that
+ * returns e.g. {@code memberId + ":" + version} for objects that carry one; an item whose key was seen
+ * before is spliced without reading any of its fields.
+ *
+ * Fragments not used by the latest conversion are dropped after the next successful one, so the cache
+ * holds at most two generations of the document. Output is identical to
+ * {@link XmlBuilder#writeXml(MappingPlan, Object, Writer, boolean)}. A writer keeps state between
+ * conversions; calls are serialized.
+ */
+public class IncrementalXmlWriter {
+
+    // Marks an empty or null collection in the fingerprint so neighbouring steps cannot shift into each other
+    private static final long NULL_VALUE = 0x6a09e667f3bcc909L;
+    private static final long COLLECTION_START = 0xbb67ae8584caa73bL;
+    private static final long COLLECTION_END = 0x3c6ef372fe94f82bL;
+
+    private final MappingPlan plan;
+    private final boolean indent;
+    private final Function<Object, Object> versionKey;
+
+    private Map<Object, Fragment> current = new HashMap<>();
+    private Map<Object, Fragment> previous = new HashMap<>();
+    private long nextFragmentId;
+    private long hits;
+    private long misses;
+
+    /**
+     * Creates a writer that fingerprints items by content.
+     *
+     * @param plan   The compiled mapping plan.
+     * @param indent Whether to pretty print the output.
+     */
+    public IncrementalXmlWriter(MappingPlan plan, boolean indent) {
+        this(plan, indent, item -> null);
+    }
+
+    /**
+     * Creates a writer that identifies items by a version key where one is available.
+     *
+     * @param plan       The compiled mapping plan.
+     * @param indent     Whether to pretty print the output.
+     * @param versionKey Returns a key that changes whenever anything rendered for the item changes, or null
+     *                   to fingerprint the item by content. Keys are compared with equals.
+     */
+    public IncrementalXmlWriter(MappingPlan plan, boolean indent, Function<Object, Object> versionKey) {
+        this.plan = plan;
+        this.indent = indent;
+        this.versionKey = versionKey;
+    }
+
+    /**
+     * Streams the API response as XML, reusing fragments from earlier conversions.
+     *
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public synchronized void writeXml(Object apiResponse, Writer writer) throws Exception {
+        boolean written = false;
+        try {
+            StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+            xmlWriter.startDocument();
+            xmlWriter.startElement(plan.getRootElementName());
+            Map<String, Object> snapshot = new HashMap<>();
+            capture(plan.getRoot().getSteps(), apiResponse, xmlWriter.getDepth(), snapshot, new long[1]);
+            XmlBuilder.writeSteps(xmlWriter, plan.getRoot().getSteps(), snapshot);
+            xmlWriter.endElement();
+            xmlWriter.endDocument();
+            written = true;
+        } finally {
+            if (written) {
+                // Keep what this conversion used, plus the previous generation for one more round
+                previous = current;
+            } else {
+                // A failed conversion does not count as a generation; nothing it looked up is dropped
+                previous.putAll(current);
+            }
+            current = new HashMap<>();
+        }
+    }
+
+    /**
+     * Converts the API response to an XML string, reusing fragments from earlier conversions.
+     *
+     * @param apiResponse The API response object.
+     * @return XML as a String.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public String buildXml(Object apiResponse) throws Exception {
+        StringWriter writer = new StringWriter();
+        writeXml(apiResponse, writer);
+        return writer.toString();
+    }
+
+    /**
+     * Gets the number of items that were spliced from the cache.
+     */
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    /**
+     * Gets the number of items that had to be rendered.
+     */
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * Gets the number of fragments currently held.
+     */
+    public synchronized int getFragmentCount() {
+        return current.size() + previous.size();
+    }
+
+    /**
+     * Drops all cached fragments.
+     */
+    public synchronized void clear() {
+        current = new HashMap<>();
+        previous = new HashMap<>();
+    }
+
+    /**
+     * Returns the fragment for one collection item, from the cache if its inputs are unchanged.
+     */
+    private Fragment resolve(MappingPlan.Node itemNode, Object item, int depth) throws Exception {
+        Object version = versionKey.apply(item);
+        if (version != null) {
+            Object key = new VersionKey(itemNode, depth, version);
+            Fragment fragment = lookup(key);
+            if (fragment == null) {
+                Map<String, Object> snapshot = new HashMap<>();
+                capture(itemNode.getSteps(), item, depth + 1, snapshot, new long[1]);
+                fragment = render(key, itemNode, depth, snapshot);
+            }
+            return fragment;
+        }
+
+        Map<String, Object> snapshot = new HashMap<>();
+        long[] fingerprint = {0};
+        capture(itemNode.getSteps(), item, depth + 1, snapshot, fingerprint);
+        Object key = new ContentKey(itemNode, depth, fingerprint[0], snapshot);
+        Fragment fragment = lookup(key);
+        return fragment != null ? fragment : render(key, itemNode, depth, snapshot);
+    }
+
+    /**
+     * Reads the values of the given steps in document order and resolves the fragments of collection items.
+     *
+     * The snapshot stands in for the source when the steps are written: it maps each API field to its
+     * value, or for a non-scalar collection to the fragments of its items.
+     *
+     * @param depth       The depth of the elements the steps produce.
+     * @param snapshot    Receives the value of every field read.
+     * @param fingerprint Accumulates a fingerprint of everything captured.
+     */
+    private void capture(List<MappingPlan.Step> steps, Object source, int depth, Map<String, Object> snapshot, long[] fingerprint) throws Exception {
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.LeafStep) {
+                String fieldName = ((MappingPlan.LeafStep) step).getApiFieldName();
+                if (snapshot.containsKey(fieldName)) continue;
+                Object value = XmlBuilder.getFieldValue(source, fieldName);
+                snapshot.put(fieldName, value);
+                fingerprint[0] = mix(fingerprint[0], valueHash(value));
+            } else if (step instanceof MappingPlan.ContainerStep) {
+                capture(((MappingPlan.ContainerStep) step).getSteps(), source, depth + 1, snapshot, fingerprint);
+            } else if (step instanceof MappingPlan.CollectionStep) {
+                MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                if (snapshot.containsKey(collection.getApiFieldName())) continue;
+                Object value = XmlBuilder.getFieldValue(source, collection.getApiFieldName());
+                if (value == null) {
+                    snapshot.put(collection.getApiFieldName(), null);
+                    fingerprint[0] = mix(fingerprint[0], NULL_VALUE);
+                    continue;
+                }
+                List<Object> entries = new ArrayList<>();
+                fingerprint[0] = mix(fingerprint[0], COLLECTION_START);
+                try {
+                    for (Iterator<?> items = XmlBuilder.iterate(value); items.hasNext(); ) {
+                        Object item = items.next();
+                        if (item == null) continue;
+                        if (collection.isScalar()) {
+                            entries.add(item);
+                            fingerprint[0] = mix(fingerprint[0], valueHash(item));
+                        } else {
+                            Fragment fragment = resolve(collection.getItem(), item, depth + 1);
+                            entries.add(fragment);
+                            fingerprint[0] = mix(fingerprint[0], fragment.id);
+                        }
+                    }
+                } finally {
+                    XmlBuilder.closeCollection(value);
+                }
+                snapshot.put(collection.getApiFieldName(), entries);
+                fingerprint[0] = mix(fingerprint[0], COLLECTION_END);
+            }
+        }
+    }
+
+    /**
+     * Renders an item from its captured values and remembers the fragment.
+     */
+    private Fragment render(Object key, MappingPlan.Node itemNode, int depth, Map<String, Object> snapshot) throws Exception {
+        StringWriter buffer = new StringWriter();
+        StreamingXmlWriter fragmentWriter = new StreamingXmlWriter(buffer, indent, depth);
+        fragmentWriter.startElement(itemNode.getElementName());
+        XmlBuilder.writeSteps(fragmentWriter, itemNode.getSteps(), snapshot);
+        fragmentWriter.endElement();
+        fragmentWriter.flush();
+
+        Fragment fragment = new Fragment(nextFragmentId++, buffer.toString());
+        current.put(key, fragment);
+        misses++;
+        return fragment;
+    }
+
+    /**
+     * Finds a fragment in the current or previous generation, keeping it for the next conversion.
+     */
+    private Fragment lookup(Object key) {
+        Fragment fragment = current.get(key);
+        if (fragment == null) {
+            fragment = previous.remove(key);
+            if (fragment == null) {
+                return null;
+            }
+            current.put(key, fragment);
+        }
+        hits++;
+        return fragment;
+    }
+
+    /**
+     * Combines a value into a fingerprint.
+     */
+    private static long mix(long fingerprint, long value) {
+        long h = (fingerprint ^ value) * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Computes a 64-bit hash of a leaf value and its class, consistent with {@link #sameValue(Object, Object)};
+     * 32-bit hash codes alone collide far too often to tell content apart.
+     */
+    private static long valueHash(Object value) {
+        if (value == null) {
+            return NULL_VALUE;
+        }
+        // Class hashes are stable for the life of the JVM, which is as long as fragments are kept
+        long type = value.getClass().hashCode();
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return mix(type, ((Number) value).longValue());
+        } else if (value instanceof Double || value instanceof Float) {
+            return mix(type, Double.doubleToLongBits(((Number) value).doubleValue()));
+        } else if (value instanceof String) {
+            String text = (String) value;
+            long h = 0xcbf29ce484222325L ^ text.length();
+            for (int i = 0; i < text.length(); i++) {
+                h = (h ^ text.charAt(i)) * 0x100000001b3L;
+            }
+            return mix(type, h);
+        }
+        return mix(type, value.hashCode());
+    }
+
+    /**
+     * Determines if two snapshot values render the same: the same fragment, or equal values of the same class.
+     */
+    private static boolean sameValue(Object a, Object b) {
+        if (a == b) {
+            return true;
+        } else if (a == null || b == null || a.getClass() != b.getClass() || a instanceof Fragment) {
+            return false;
+        } else if (a instanceof List) {
+            List<?> x = (List<?>) a;
+            List<?> y = (List<?>) b;
+            if (x.size() != y.size()) return false;
+            for (int i = 0; i < x.size(); i++) {
+                if (!sameValue(x.get(i), y.get(i))) return false;
+            }
+            return true;
+        }
+        return a.equals(b);
+    }
+
+    /**
+     * A rendered collection item, spliced as is by {@link XmlBuilder#writeCollection}. Ids are unique and
+     * mixed into the fingerprint of the enclosing item.
+     */
+    private static final class Fragment extends XmlBuilder.RenderedItem {
+        private final long id;
+        private final String xml;
+
+        private Fragment(long id, String xml) {
+            this.id = id;
+            this.xml = xml;
+        }
+
+        @Override
+        void writeTo(StreamingXmlWriter writer) throws Exception {
+            writer.raw(xml);
+        }
+    }
+
+    /**
+     * Cache key of an item identified by its content. The fingerprint only narrows the search; keys are
+     * equal only if their snapshots are, so a fingerprint collision cannot splice a stale fragment.
+     */
+    private static final class ContentKey {
+        private final MappingPlan.Node node;
+        private final int depth;
+        private final long fingerprint;
+        private final Map<String, Object> snapshot;
+
+        private ContentKey(MappingPlan.Node node, int depth, long fingerprint, Map<String, Object> snapshot) {
+            this.node = node;
+            this.depth = depth;
+            this.fingerprint = fingerprint;
+            this.snapshot = snapshot;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof ContentKey)) return false;
+            ContentKey key = (ContentKey) other;
+            if (node != key.node || depth != key.depth || fingerprint != key.fingerprint || snapshot.size() != key.snapshot.size()) {
+                return false;
+            }
+            for (Map.Entry<String, Object> entry : snapshot.entrySet()) {
+                if (!sameValue(entry.getValue(), key.snapshot.get(entry.getKey()))) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(fingerprint) * 31 + depth;
+        }
+    }
+
+    /**
+     * Cache key of an item identified by its version key.
+     */
+    private static final class VersionKey {
+        private final MappingPlan.Node node;
+        private final int depth;
+        private final Object version;
+
+        private VersionKey(MappingPlan.Node node, int depth, Object version) {
+            this.node = node;
+            this.depth = depth;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof VersionKey)) return false;
+            VersionKey key = (VersionKey) other;
+            return node == key.node && depth == key.depth && version.equals(key.version);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(node), depth, version);
+        }
+    }
+}
@@ -0,0 +1,313 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Pull tokenizer for JSON text (RFC 8259), reading through a fixed buffer.
+ *
+ * Only the current token is held, so documents of any size are read in constant memory. Field
+ * names are taken from a small cache, since the same few names repeat for every object of a
+ * response, and strings without escapes are cut straight out of the read buffer.
+ */
+final class JsonTokenizer {
+
+    enum Token {
+        START_OBJECT, END_OBJECT, START_ARRAY, END_ARRAY, FIELD_NAME, STRING, NUMBER, TRUE, FALSE, NULL, END
+    }
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int NAME_CACHE_SIZE = 256;
+
+    private final Reader reader;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+    private int limit;
+    private long consumed; // characters dropped from the buffer before the current one
+
+    // Open containers, true for objects
+    private boolean[] objects = new boolean[32];
+    private int depth;
+    private boolean afterValue; // a value of the current container is complete
+    private boolean afterName;  // a field name and its colon have been read
+
+    private String text;
+    private final StringBuilder scratch = new StringBuilder();
+    private final String[] names = new String[NAME_CACHE_SIZE];
+
+    JsonTokenizer(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next token.
+     *
+     * @return The token; {@link Token#END} once the document is complete.
+     * @throws IOException if the text is not well-formed JSON or cannot be read.
+     */
+    Token next() throws IOException {
+        int c = skipWhitespace();
+        if (depth > 0 && objects[depth - 1] && !afterName) {
+            if (c == '}') {
+                return close();
+            }
+            if (afterValue) {
+                if (c != ',') throw error("Expected ',' or '}'");
+                pos++;
+                c = skipWhitespace();
+            }
+            if (c != '"') throw error("Expected a field name");
+            pos++;
+            text = readString(true);
+            if (skipWhitespace() != ':') throw error("Expected ':'");
+            pos++;
+            afterName = true;
+            afterValue = false;
+            return Token.FIELD_NAME;
+        }
+        if (depth > 0 && !objects[depth - 1]) {
+            if (c == ']') {
+                return close();
+            }
+            if (afterValue) {
+                if (c != ',') throw error("Expected ',' or ']'");
+                pos++;
+                c = skipWhitespace();
+                if (c == ']') throw error("Expected a value");
+            }
+        } else if (depth == 0 && afterValue) {
+            if (c != -1) throw error("Unexpected content after the document");
+            return Token.END;
+        }
+        afterName = false;
+        return value(c);
+    }
+
+    /**
+     * Gets the text of the current field name, string or number.
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Skips the rest of the value starting with the given token, including nested values.
+     */
+    void skipValue(Token token) throws IOException {
+        if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+            int target = depth - 1;
+            while (depth > target) {
+                next();
+            }
+        }
+    }
+
+    private Token value(int c) throws IOException {
+        switch (c) {
+            case '{':
+                pos++;
+                push(true);
+                return Token.START_OBJECT;
+            case '[':
+                pos++;
+                push(false);
+                return Token.START_ARRAY;
+            case '"':
+                pos++;
+                text = readString(false);
+                afterValue = true;
+                return Token.STRING;
+            case 't':
+                literal("true");
+                return Token.TRUE;
+            case 'f':
+                literal("false");
+                return Token.FALSE;
+            case 'n':
+                literal("null");
+                return Token.NULL;
+            case -1:
+                throw error("Unexpected end of input");
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) {
+                    text = readNumber();
+                    afterValue = true;
+                    return Token.NUMBER;
+                }
+                throw error("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    private void push(boolean object) {
+        if (depth == objects.length) {
+            objects = Arrays.copyOf(objects, depth * 2);
+        }
+        objects[depth++] = object;
+        afterValue = false;
+        afterName = false;
+    }
+
+    private Token close() {
+        pos++;
+        boolean object = objects[--depth];
+        afterValue = true;
+        afterName = false;
+        return object ? Token.END_OBJECT : Token.END_ARRAY;
+    }
+
+    private void literal(String expected) throws IOException {
+        for (int i = 0; i < expected.length(); i++) {
+            if (peek() != expected.charAt(i)) throw error("Invalid literal, expected '" + expected + "'");
+            pos++;
+        }
+        afterValue = true;
+    }
+
+    /**
+     * Reads a string after its opening quote, up to and including the closing quote.
+     */
+    private String readString(boolean name) throws IOException {
+        // Fast path: the whole string sits in the buffer and has no escapes
+        for (int i = pos; i < limit; i++) {
+            char c = buffer[i];
+            if (c == '"') {
+                String value = name ? name(pos, i - pos) : new String(buffer, pos, i - pos);
+                pos = i + 1;
+                return value;
+            }
+            if (c == '\\' || c < 0x20) break;
+        }
+        scratch.setLength(0);
+        while (true) {
+            int c = peek();
+            if (c == -1) throw error("Unterminated string");
+            pos++;
+            if (c == '"') break;
+            if (c < 0x20) throw error("Unescaped control character in string");
+            if (c != '\\') {
+                scratch.append((char) c);
+                continue;
+            }
+            int escape = peek();
+            pos++;
+            switch (escape) {
+                case '"':
+                case '\\':
+                case '/':
+                    scratch.append((char) escape);
+                    break;
+                case 'b':
+                    scratch.append('\b');
+                    break;
+                case 'f':
+                    scratch.append('\f');
+                    break;
+                case 'n':
+                    scratch.append('\n');
+                    break;
+                case 'r':
+                    scratch.append('\r');
+                    break;
+                case 't':
+                    scratch.append('\t');
+                    break;
+                case 'u':
+                    int code = 0;
+                    for (int i = 0; i < 4; i++) {
+                        int digit = Character.digit(peek(), 16);
+                        if (digit < 0) throw error("Invalid unicode escape");
+                        pos++;
+                        code = code * 16 + digit;
+                    }
+                    scratch.append((char) code);
+                    break;
+                default:
+                    throw error("Invalid escape");
+            }
+        }
+        return scratch.toString();
+    }
+
+    /**
+     * Gets a field name from the cache, adding it if it is not there.
+     */
+    private String name(int start, int length) {
+        int hash = 0;
+        for (int i = start; i < start + length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int slot = (hash ^ (hash >>> 16)) & (NAME_CACHE_SIZE - 1);
+        String cached = names[slot];
+        if (cached != null && cached.length() == length) {
+            int i = 0;
+            while (i < length && cached.charAt(i) == buffer[start + i]) i++;
+            if (i == length) return cached;
+        }
+        String name = new String(buffer, start, length);
+        names[slot] = name;
+        return name;
+    }
+
+    /**
+     * Reads a number, checking it against the JSON grammar; its text is passed on unchanged.
+     */
+    private String readNumber() throws IOException {
+        scratch.setLength(0);
+        if (peek() == '-') take();
+        if (peek() == '0') {
+            take();
+        } else if (!takeDigits()) {
+            throw error("Invalid number");
+        }
+        if (peek() == '.') {
+            take();
+            if (!takeDigits()) throw error("Invalid number");
+        }
+        if (peek() == 'e' || peek() == 'E') {
+            take();
+            if (peek() == '+' || peek() == '-') take();
+            if (!takeDigits()) throw error("Invalid number");
+        }
+        return scratch.toString();
+    }
+
+    private boolean takeDigits() throws IOException {
+        boolean any = false;
+        for (int c = peek(); c >= '0' && c <= '9'; c = peek()) {
+            take();
+            any = true;
+        }
+        return any;
+    }
+
+    private void take() throws IOException {
+        scratch.append((char) peek());
+        pos++;
+    }
+
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return c;
+            pos++;
+        }
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) return -1;
+        return buffer[pos];
+    }
+
+    private boolean fill() throws IOException {
+        consumed += limit;
+        pos = 0;
+        limit = 0;
+        int read = reader.read(buffer, 0, buffer.length);
+        if (read <= 0) return false;
+        limit = read;
+        return true;
+    }
+
+    private IOException error(String message) {
+        return new IOException("Malformed JSON at character " + (consumed + pos) + ": " + message);
+    }
+}
@@ -0,0 +1,339 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transcodes JSON API responses straight to XML according to the mapping plan, without binding them
+ * to API objects first.
+ *
+ * The JSON is read as a token stream and matched against the plan the way {@link XmlBuilder} matches
+ * object fields: the top-level object is bound to the root element, a JSON field named like a mapping's
+ * API field name feeds that mapping, and each object in an array field is bound to a collection item.
+ * Leaf values are passed to the mapping's converter as the JSON text (numbers unchanged, booleans as
+ * Booleans), so the output is the same as converting the equivalent objects. No reflection is used and
+ * only the current token and the open objects are held in memory.
+ *
+ * Elements are written in mapping order. Fields arriving in that order, as serializers of the API
+ * classes write them, are streamed through; a collection arriving before a field mapped in front of it
+ * is rendered into a fragment and spliced in once the earlier fields are known. Unmapped fields are skipped.
+ * A transcoder is immutable and thread-safe.
+ */
+public final class JsonXmlTranscoder {
+
+    private final MappingPlan plan;
+    private final ObjectLayout root;
+
+    /**
+     * Creates a transcoder for the given plan.
+     *
+     * @param plan The compiled mapping plan.
+     */
+    public JsonXmlTranscoder(MappingPlan plan) {
+        this.plan = plan;
+        this.root = new ObjectLayout(plan.getRoot().getSteps());
+    }
+
+    /**
+     * Transcodes a JSON document to pretty printed XML.
+     *
+     * @param json The JSON document.
+     * @return XML as a String.
+     * @throws Exception if the JSON is malformed or a value cannot be converted.
+     */
+    public String transcode(String json) throws Exception {
+        StringWriter writer = new StringWriter();
+        transcode(new StringReader(json), writer, true);
+        return writer.toString();
+    }
+
+    /**
+     * Transcodes a UTF-8 encoded JSON document to UTF-8 encoded XML.
+     *
+     * @param json   The JSON document; it is not closed.
+     * @param out    The destination; it is flushed but not closed.
+     * @param indent Whether to pretty print the output.
+     * @throws Exception if the JSON is malformed or a value cannot be converted.
+     */
+    public void transcode(InputStream json, OutputStream out, boolean indent) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        transcode(new InputStreamReader(json, StandardCharsets.UTF_8), writer, indent);
+    }
+
+    /**
+     * Transcodes a JSON document to XML.
+     *
+     * @param json   The JSON document; it is not closed.
+     * @param writer The destination; it is flushed but not closed.
+     * @param indent Whether to pretty print the output.
+     * @throws Exception if the JSON is malformed or a value cannot be converted.
+     */
+    public void transcode(Reader json, Writer writer, boolean indent) throws Exception {
+        JsonTokenizer tokens = new JsonTokenizer(json);
+        if (tokens.next() != JsonTokenizer.Token.START_OBJECT) {
+            throw new IllegalArgumentException("The JSON document must be an object.");
+        }
+        StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+        xmlWriter.startDocument();
+        xmlWriter.startElement(plan.getRootElementName());
+        writeObject(tokens, root, xmlWriter, indent);
+        xmlWriter.endElement();
+        if (tokens.next() != JsonTokenizer.Token.END) {
+            throw new IllegalArgumentException("Unexpected content after the JSON document.");
+        }
+        xmlWriter.endDocument();
+    }
+
+    /**
+     * Gets the plan this transcoder writes with.
+     */
+    public MappingPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Writes the content of a JSON object whose element is open; returns after its closing brace.
+     */
+    private static void writeObject(JsonTokenizer tokens, ObjectLayout layout, StreamingXmlWriter out, boolean indent) throws Exception {
+        ObjectState state = new ObjectState(layout, out);
+        for (JsonTokenizer.Token token = tokens.next(); token != JsonTokenizer.Token.END_OBJECT; token = tokens.next()) {
+            int[] slots = layout.fieldSlots.get(tokens.getText());
+            JsonTokenizer.Token value = tokens.next();
+            if (slots == null) {
+                tokens.skipValue(value);
+                continue;
+            }
+            Item first = layout.items[slots[0]];
+            if (first.kind == ItemKind.COLLECTION) {
+                writeCollection(tokens, value, state, slots[0], indent);
+            } else {
+                Object scalar = scalar(tokens, value);
+                for (int slot : slots) {
+                    state.resolve(slot, scalar);
+                }
+            }
+            state.advance();
+        }
+        state.finish();
+    }
+
+    /**
+     * Writes an array field as a collection, directly if every element before it has been written,
+     * otherwise into a fragment that is spliced in later.
+     */
+    private static void writeCollection(JsonTokenizer tokens, JsonTokenizer.Token value, ObjectState state, int slot, boolean indent) throws Exception {
+        Item item = state.layout.items[slot];
+        if (state.resolved[slot]) {
+            tokens.skipValue(value);
+            return;
+        }
+        if (value == JsonTokenizer.Token.NULL) {
+            state.resolve(slot, null);
+            return;
+        }
+        if (value != JsonTokenizer.Token.START_ARRAY) {
+            throw new IllegalArgumentException("Field '" + item.collection.getApiFieldName() + "' must be a JSON array.");
+        }
+        state.advance();
+        if (state.cursor == slot) {
+            writeArray(tokens, item, state.out, indent);
+            state.resolve(slot, null);
+            return;
+        }
+        StringWriter buffer = new StringWriter();
+        StreamingXmlWriter fragment = new StreamingXmlWriter(buffer, indent, state.baseDepth + item.depth);
+        writeArray(tokens, item, fragment, indent);
+        fragment.flush();
+        state.resolve(slot, buffer.toString());
+    }
+
+    /**
+     * Writes the container element of a collection with one item element per non-null array entry.
+     */
+    private static void writeArray(JsonTokenizer tokens, Item item, StreamingXmlWriter out, boolean indent) throws Exception {
+        MappingPlan.CollectionStep collection = item.collection;
+        String itemName = collection.getItem().getElementName();
+        out.startElement(collection.getContainerName());
+        for (JsonTokenizer.Token token = tokens.next(); token != JsonTokenizer.Token.END_ARRAY; token = tokens.next()) {
+            if (item.itemLayout == null) {
+                Object value = scalar(tokens, token);
+                if (value != null) {
+                    out.leaf(itemName, value, collection.getItemConverter());
+                }
+            } else if (token == JsonTokenizer.Token.START_OBJECT) {
+                out.startElement(itemName);
+                writeObject(tokens, item.itemLayout, out, indent);
+                out.endElement();
+            } else {
+                tokens.skipValue(token);
+            }
+        }
+        out.endElement();
+    }
+
+    /**
+     * Reads a scalar JSON value as the API value a converter expects; nested structures are skipped.
+     */
+    private static Object scalar(JsonTokenizer tokens, JsonTokenizer.Token token) throws IOException {
+        switch (token) {
+            case STRING:
+            case NUMBER:
+                return tokens.getText();
+            case TRUE:
+                return Boolean.TRUE;
+            case FALSE:
+                return Boolean.FALSE;
+            default:
+                tokens.skipValue(token);
+                return null;
+        }
+    }
+
+    private enum ItemKind {
+        OPEN, CLOSE, LEAF, COLLECTION
+    }
+
+    /**
+     * One step of writing an object: opening or closing a container element, or a mapped field.
+     */
+    private static final class Item {
+        private final ItemKind kind;
+        private final String name;
+        private final String field; // the JSON field feeding a leaf or collection
+        private final int depth; // containers open around the item
+        private final ValueConverter converter;
+        private final MappingPlan.CollectionStep collection;
+        private final ObjectLayout itemLayout; // null for collections of simple values
+
+        private Item(ItemKind kind, String name, String field, int depth, ValueConverter converter, MappingPlan.CollectionStep collection) {
+            this.kind = kind;
+            this.name = name;
+            this.field = field;
+            this.depth = depth;
+            this.converter = converter;
+            this.collection = collection;
+            this.itemLayout = collection != null && !collection.isScalar() ? new ObjectLayout(collection.getItem().getSteps()) : null;
+        }
+    }
+
+    /**
+     * The steps of a plan node flattened into writing order, with the items fed by each JSON field.
+     */
+    private static final class ObjectLayout {
+        private final Item[] items;
+        private final Map<String, int[]> fieldSlots = new HashMap<>();
+
+        private ObjectLayout(List<MappingPlan.Step> steps) {
+            List<Item> flattened = new ArrayList<>();
+            flatten(steps, 0, flattened);
+            this.items = flattened.toArray(new Item[0]);
+            for (int i = 0; i < items.length; i++) {
+                if (items[i].field == null) continue;
+                int[] slots = fieldSlots.get(items[i].field);
+                if (slots == null) {
+                    fieldSlots.put(items[i].field, new int[] {i});
+                } else if (items[i].kind == ItemKind.LEAF && items[slots[0]].kind == ItemKind.LEAF) {
+                    // The same field written by several leaves
+                    int[] more = Arrays.copyOf(slots, slots.length + 1);
+                    more[slots.length] = i;
+                    fieldSlots.put(items[i].field, more);
+                }
+            }
+        }
+
+        private static void flatten(List<MappingPlan.Step> steps, int depth, List<Item> items) {
+            for (MappingPlan.Step step : steps) {
+                if (step instanceof MappingPlan.LeafStep) {
+                    MappingPlan.LeafStep leaf = (MappingPlan.LeafStep) step;
+                    items.add(new Item(ItemKind.LEAF, leaf.getXmlElementName(), leaf.getApiFieldName(), depth, leaf.getConverter(), null));
+                } else if (step instanceof MappingPlan.ContainerStep) {
+                    MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                    items.add(new Item(ItemKind.OPEN, container.getElementName(), null, depth, null, null));
+                    flatten(container.getSteps(), depth + 1, items);
+                    items.add(new Item(ItemKind.CLOSE, container.getElementName(), null, depth, null, null));
+                } else if (step instanceof MappingPlan.CollectionStep) {
+                    MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                    items.add(new Item(ItemKind.COLLECTION, collection.getContainerName(), collection.getApiFieldName(), depth, null, collection));
+                }
+            }
+        }
+    }
+
+    /**
+     * Progress of writing one JSON object: the fields seen so far and how far output has got.
+     */
+    private static final class ObjectState {
+        private final ObjectLayout layout;
+        private final StreamingXmlWriter out;
+        private final int baseDepth;
+        private final Object[] values; // pending leaf values and collection fragments
+        private final boolean[] resolved;
+        private int cursor; // the first item not written yet
+
+        private ObjectState(ObjectLayout layout, StreamingXmlWriter out) {
+            this.layout = layout;
+            this.out = out;
+            this.baseDepth = out.getDepth();
+            this.values = new Object[layout.items.length];
+            this.resolved = new boolean[layout.items.length];
+        }
+
+        /**
+         * Records the value of a field; a repeated field keeps its first value.
+         */
+        private void resolve(int slot, Object value) {
+            if (!resolved[slot]) {
+                values[slot] = value;
+                resolved[slot] = true;
+            }
+        }
+
+        /**
+         * Writes items in order up to the first field that has not been seen yet.
+         */
+        private void advance() throws IOException {
+            Item[] items = layout.items;
+            for (; cursor < items.length; cursor++) {
+                Item item = items[cursor];
+                switch (item.kind) {
+                    case OPEN:
+                        out.startElement(item.name);
+                        break;
+                    case CLOSE:
+                        out.endElement();
+                        break;
+                    default:
+                        if (!resolved[cursor]) return;
+                        Object value = values[cursor];
+                        values[cursor] = null;
+                        if (value == null) break;
+                        if (item.kind == ItemKind.LEAF) {
+                            out.leaf(item.name, value, item.converter);
+                        } else {
+                            out.raw((String) value);
+                        }
+                }
+            }
+        }
+
+        /**
+         * Writes the remaining items once the object has ended; fields not seen are absent.
+         */
+        private void finish() throws IOException {
+            Arrays.fill(resolved, true);
+            advance();
+        }
+    }
+}
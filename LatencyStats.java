@@ -0,0 +1,84 @@
+import java.util.Arrays;
+
+/**
+ * Collects latency samples and reports percentiles.
+ *
+ * Samples are kept in full so percentiles are exact; one instance is meant to be filled by a single
+ * thread and can be combined with others through {@link #merge(LatencyStats)}.
+ */
+public class LatencyStats {
+
+    private long[] samples = new long[1024];
+    private int count;
+    private boolean sorted;
+
+    /**
+     * Records one sample.
+     *
+     * @param nanos The measured duration in nanoseconds.
+     */
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, count * 2);
+        }
+        samples[count++] = nanos;
+        sorted = false;
+    }
+
+    /**
+     * Adds all samples of another instance to this one.
+     */
+    public void merge(LatencyStats other) {
+        if (count + other.count > samples.length) {
+            samples = Arrays.copyOf(samples, Math.max(samples.length * 2, count + other.count));
+        }
+        System.arraycopy(other.samples, 0, samples, count, other.count);
+        count += other.count;
+        sorted = false;
+    }
+
+    /**
+     * Gets the number of samples.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Gets the sample at the given percentile, in nanoseconds.
+     *
+     * @param percentile A value between 0 and 100.
+     * @return The sample at the percentile, or 0 if there are none.
+     */
+    public long percentile(double percentile) {
+        if (count == 0) return 0;
+        if (!sorted) {
+            Arrays.sort(samples, 0, count);
+            sorted = true;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * count) - 1;
+        return samples[Math.max(0, Math.min(count - 1, index))];
+    }
+
+    /**
+     * Gets the mean sample, in nanoseconds.
+     */
+    public double mean() {
+        if (count == 0) return 0;
+        double total = 0;
+        for (int i = 0; i < count; i++) {
+            total += samples[i];
+        }
+        return total / count;
+    }
+
+    /**
+     * Formats a duration in nanoseconds with a readable unit.
+     */
+    public static String format(double nanos) {
+        if (nanos >= 1_000_000_000) return String.format("%.2f s", nanos / 1_000_000_000);
+        if (nanos >= 1_000_000) return String.format("%.2f ms", nanos / 1_000_000);
+        if (nanos >= 1_000) return String.format("%.2f us", nanos / 1_000);
+        return String.format("%.0f ns", nanos);
+    }
+}
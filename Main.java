@@ -2,7 +2,12 @@ import java.util.Arrays;
 import java.util.List;
 
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0) {
+            // Batch mode: BatchRunner <mapping.xlsx> <input> [options]
+            BatchRunner.main(args);
+            return;
+        }
         try {
             // Step 1: Load the Excel mapping configuration
             List<ExcelMappingReader.XmlMapping> mappings = ExcelMappingReader.readMappings("field_mappings.xlsx");
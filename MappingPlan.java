@@ -0,0 +1,454 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable, precompiled form of a mapping sheet.
+ *
+ * The plan is compiled once from the rows returned by {@link ExcelMappingReader#readMappings(String)}
+ * and can then be shared between threads and reused for any number of conversions. All path splitting,
+ * grouping, singular-name resolution and converter selection happens at compile time, so
+ * {@link XmlBuilder#buildXml(MappingPlan, Object)} only walks the prebuilt tree of path nodes.
+ *
+ * Mapping semantics:
+ * - The first segment of the first mapping's XML Path is the root element, bound to the API response.
+ * - A row whose API data type is {@code List<...>} (or {@code Iterable<...>}, {@code Iterator<...>},
+ *   {@code Stream<...>}) declares a collection: the API field is read from the enclosing object, the XML
+ *   Path names the container element and each item is written as an element named after the singular form
+ *   of the container. The field may hold any Iterable, an Iterator or a Stream; entries are pulled one at a
+ *   time and streams are closed afterwards, so a streaming conversion never needs the whole collection in
+ *   memory. Collections may be nested to any depth; a collection of simple values (e.g. {@code List<String>})
+ *   writes each converted value as the item's text.
+ * - Any other row is a leaf value: the API field is read from the object bound to its XML Path (the
+ *   collection item when the path equals a collection path, otherwise the enclosing object) and written
+ *   as an element named after the XML Element Name.
+ */
+public final class MappingPlan {
+
+    private static final Set<String> SUPPORTED_GROUPS = new HashSet<>(Arrays.asList(
+            "Company", "Branch", "Team", "Member", "Technology", "Task", "Campaign"));
+
+    // API data types declaring a collection; the field is iterated lazily whatever its declared type
+    private static final String[] COLLECTION_TYPE_PREFIXES = {"List<", "Collection<", "Set<", "Iterable<", "Iterator<", "Stream<"};
+
+    private final String rootElementName;
+    private final Node root;
+    private final List<ExcelMappingReader.XmlMapping> mappings;
+    private final Map<Class<?>, CompiledXmlWriter> compiledWriters = new ConcurrentHashMap<>();
+
+    private MappingPlan(String rootElementName, Node root, List<ExcelMappingReader.XmlMapping> mappings) {
+        this.rootElementName = rootElementName;
+        this.root = root;
+        this.mappings = mappings;
+    }
+
+    /**
+     * Compiles the given mappings into a reusable plan.
+     *
+     * @param mappings List of XmlMapping defining the field mappings.
+     * @return The compiled plan.
+     * @throws IllegalArgumentException if no mappings are provided.
+     */
+    public static MappingPlan compile(List<ExcelMappingReader.XmlMapping> mappings) {
+        if (mappings == null || mappings.isEmpty()) {
+            throw new IllegalArgumentException("No mappings provided.");
+        }
+        String[] firstPath = splitPath(mappings.get(0).getXmlPath());
+        if (firstPath.length == 0) {
+            throw new IllegalArgumentException("First mapping has no XML Path to derive the root element from.");
+        }
+        String rootElementName = firstPath[0];
+
+        // Index collection declarations by their XML Path so every row can find its owning object
+        Map<String, ExcelMappingReader.XmlMapping> collectionsByPath = new HashMap<>();
+        for (ExcelMappingReader.XmlMapping mapping : mappings) {
+            if (SUPPORTED_GROUPS.contains(mapping.getGroup()) && isCollectionType(mapping.getApiDataType())) {
+                collectionsByPath.putIfAbsent(normalizePath(mapping.getXmlPath()), mapping);
+            }
+        }
+
+        NodeBuilder rootBuilder = new NodeBuilder(rootElementName);
+        Map<String, NodeBuilder> itemBuilders = new HashMap<>();
+        itemBuilders.put(rootElementName, rootBuilder);
+
+        for (ExcelMappingReader.XmlMapping mapping : mappings) {
+            if (!SUPPORTED_GROUPS.contains(mapping.getGroup())) continue; // Skip unknown groups
+            String path = normalizePath(mapping.getXmlPath());
+            String[] segments = splitPath(path);
+            if (segments.length == 0 || !segments[0].equals(rootElementName)) continue;
+
+            boolean collection = isCollectionType(mapping.getApiDataType());
+            // Leaves belong to the collection declared at their own path; collections to an enclosing one
+            String ownerPath = findOwnerPath(segments, collection ? segments.length - 1 : segments.length, collectionsByPath, rootElementName);
+            NodeBuilder owner = resolveItemBuilder(ownerPath, collectionsByPath, itemBuilders);
+            if (owner == null) continue;
+
+            String[] relative = Arrays.copyOfRange(segments, splitPath(ownerPath).length, segments.length);
+            if (collection) {
+                NodeBuilder parent = owner.container(Arrays.copyOf(relative, relative.length - 1));
+                String containerName = relative[relative.length - 1];
+                NodeBuilder itemBuilder = itemBuilders.get(path);
+                if (itemBuilder == null) {
+                    itemBuilder = new NodeBuilder(getSingularForm(containerName));
+                    itemBuilders.put(path, itemBuilder);
+                }
+                parent.steps.add(new CollectionBuilder(mapping, containerName, itemBuilder));
+            } else {
+                NodeBuilder parent = owner.container(relative);
+                parent.steps.add(new LeafStep(mapping));
+            }
+        }
+
+        return new MappingPlan(rootElementName, rootBuilder.build(), Collections.unmodifiableList(new ArrayList<>(mappings)));
+    }
+
+    /**
+     * Finds the longest collection path that is a prefix of the first {@code length} segments.
+     */
+    private static String findOwnerPath(String[] segments, int length, Map<String, ExcelMappingReader.XmlMapping> collectionsByPath, String rootElementName) {
+        for (int i = length; i > 1; i--) {
+            String candidate = String.join("/", Arrays.copyOf(segments, i));
+            if (collectionsByPath.containsKey(candidate)) {
+                return candidate;
+            }
+        }
+        return rootElementName;
+    }
+
+    /**
+     * Returns the builder for the item node bound to the given owner path, creating it if necessary.
+     */
+    private static NodeBuilder resolveItemBuilder(String ownerPath, Map<String, ExcelMappingReader.XmlMapping> collectionsByPath, Map<String, NodeBuilder> itemBuilders) {
+        NodeBuilder builder = itemBuilders.get(ownerPath);
+        if (builder == null && collectionsByPath.containsKey(ownerPath)) {
+            builder = new NodeBuilder(getSingularForm(getLastPathSegment(ownerPath)));
+            itemBuilders.put(ownerPath, builder);
+        }
+        return builder;
+    }
+
+    /**
+     * Gets the name of the root element.
+     */
+    public String getRootElementName() {
+        return rootElementName;
+    }
+
+    /**
+     * Gets the node bound to the API response object.
+     */
+    public Node getRoot() {
+        return root;
+    }
+
+    /**
+     * Gets the mappings this plan was compiled from.
+     */
+    public List<ExcelMappingReader.XmlMapping> getMappings() {
+        return mappings;
+    }
+
+    /**
+     * Gets the writers generated for this plan, by root API class.
+     */
+    Map<Class<?>, CompiledXmlWriter> getCompiledWriters() {
+        return compiledWriters;
+    }
+
+    /**
+     * Determines if an API data type declares a collection.
+     */
+    static boolean isCollectionType(String apiDataType) {
+        if (apiDataType == null) return false;
+        for (String prefix : COLLECTION_TYPE_PREFIXES) {
+            if (apiDataType.startsWith(prefix)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Gets the element type of a collection data type such as {@code List<...>}, or an empty string if there is none.
+     */
+    static String getElementType(String apiDataType) {
+        if (!isCollectionType(apiDataType)) return "";
+        int end = apiDataType.lastIndexOf('>');
+        return apiDataType.substring(apiDataType.indexOf('<') + 1, end < 0 ? apiDataType.length() : end).trim();
+    }
+
+    /**
+     * Determines if a data type is written as text rather than as a mapped object.
+     */
+    static boolean isSimpleType(String dataType) {
+        return DataTypeConverter.isSimpleType(dataType);
+    }
+
+    /**
+     * Trims surrounding whitespace and slashes from an XML path.
+     */
+    static String normalizePath(String path) {
+        if (path == null) return "";
+        String normalized = path.trim();
+        while (normalized.startsWith("/")) normalized = normalized.substring(1);
+        while (normalized.endsWith("/")) normalized = normalized.substring(0, normalized.length() - 1);
+        return normalized;
+    }
+
+    /**
+     * Splits an XML path into its segments.
+     */
+    static String[] splitPath(String path) {
+        String normalized = normalizePath(path);
+        return normalized.isEmpty() ? new String[0] : normalized.split("/");
+    }
+
+    /**
+     * Gets the last segment of an XML path.
+     */
+    static String getLastPathSegment(String path) {
+        String[] parts = splitPath(path);
+        return parts.length == 0 ? "" : parts[parts.length - 1];
+    }
+
+    /**
+     * Converts plural to singular (simple heuristic).
+     * For more complex scenarios, consider using a library like Apache Commons Lang's WordUtils.
+     */
+    static String getSingularForm(String plural) {
+        if (plural.endsWith("ies")) {
+            return plural.substring(0, plural.length() - 3) + "y";
+        } else if (plural.endsWith("ches") || plural.endsWith("shes") || plural.endsWith("sses") || plural.endsWith("xes")) {
+            return plural.substring(0, plural.length() - 2);
+        } else if (plural.endsWith("s") && !plural.endsWith("ss")) {
+            return plural.substring(0, plural.length() - 1);
+        }
+        return plural; // Return as-is if not identifiable
+    }
+
+    /**
+     * Normalizes a data type name once so conversions do not have to.
+     */
+    private static String normalizeType(String dataType) {
+        return dataType == null ? "" : dataType.trim().toLowerCase();
+    }
+
+    /**
+     * An element bound to an object: the root element or a collection item.
+     * Its steps are kept in the order their mappings first appear in the sheet.
+     */
+    public static final class Node {
+        private final String elementName;
+        private final List<Step> steps;
+
+        private Node(String elementName, List<Step> steps) {
+            this.elementName = elementName;
+            this.steps = steps;
+        }
+
+        public String getElementName() {
+            return elementName;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+    }
+
+    /**
+     * A single instruction within a node.
+     */
+    public abstract static class Step {
+        private Step() {
+        }
+    }
+
+    /**
+     * Writes a converted field value as a child element.
+     */
+    public static final class LeafStep extends Step {
+        private final ExcelMappingReader.XmlMapping mapping;
+        private final String apiFieldName;
+        private final String xmlElementName;
+        private final String apiDataType;
+        private final String xmlDataType;
+        private final ValueConverter converter;
+
+        private LeafStep(ExcelMappingReader.XmlMapping mapping) {
+            this.mapping = mapping;
+            this.apiFieldName = mapping.getApiFieldName();
+            this.xmlElementName = mapping.getXmlElementName();
+            this.apiDataType = normalizeType(mapping.getApiDataType());
+            this.xmlDataType = normalizeType(mapping.getXmlDataType());
+            this.converter = DataTypeConverter.forTypes(mapping.getApiDataType(), mapping.getXmlDataType());
+        }
+
+        public ExcelMappingReader.XmlMapping getMapping() {
+            return mapping;
+        }
+
+        public String getApiFieldName() {
+            return apiFieldName;
+        }
+
+        public String getXmlElementName() {
+            return xmlElementName;
+        }
+
+        public String getApiDataType() {
+            return apiDataType;
+        }
+
+        public String getXmlDataType() {
+            return xmlDataType;
+        }
+
+        public ValueConverter getConverter() {
+            return converter;
+        }
+    }
+
+    /**
+     * Writes a static wrapper element around further steps of the same object.
+     */
+    public static final class ContainerStep extends Step {
+        private final String elementName;
+        private final List<Step> steps;
+
+        private ContainerStep(String elementName, List<Step> steps) {
+            this.elementName = elementName;
+            this.steps = steps;
+        }
+
+        public String getElementName() {
+            return elementName;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+    }
+
+    /**
+     * Writes a container element holding one item element per collection entry.
+     */
+    public static final class CollectionStep extends Step {
+        private final ExcelMappingReader.XmlMapping mapping;
+        private final String apiFieldName;
+        private final String containerName;
+        private final Node item;
+        private final boolean scalar;
+        private final String itemApiDataType;
+        private final String itemXmlDataType;
+        private final ValueConverter itemConverter;
+
+        private CollectionStep(ExcelMappingReader.XmlMapping mapping, String containerName, Node item) {
+            this.mapping = mapping;
+            this.apiFieldName = mapping.getApiFieldName();
+            this.containerName = containerName;
+            this.item = item;
+            this.itemApiDataType = normalizeType(getElementType(mapping.getApiDataType()));
+            this.itemXmlDataType = normalizeType(mapping.getXmlDataType());
+            this.scalar = item.getSteps().isEmpty() && isSimpleType(itemApiDataType);
+            this.itemConverter = DataTypeConverter.forTypes(getElementType(mapping.getApiDataType()), mapping.getXmlDataType());
+        }
+
+        public ExcelMappingReader.XmlMapping getMapping() {
+            return mapping;
+        }
+
+        public String getApiFieldName() {
+            return apiFieldName;
+        }
+
+        public String getContainerName() {
+            return containerName;
+        }
+
+        public Node getItem() {
+            return item;
+        }
+
+        /**
+         * Determines if items are simple values written as the item element's text.
+         */
+        public boolean isScalar() {
+            return scalar;
+        }
+
+        public String getItemApiDataType() {
+            return itemApiDataType;
+        }
+
+        public String getItemXmlDataType() {
+            return itemXmlDataType;
+        }
+
+        public ValueConverter getItemConverter() {
+            return itemConverter;
+        }
+    }
+
+    /**
+     * Mutable node used while compiling; containers are looked up by name so shared paths collapse.
+     */
+    private static final class NodeBuilder {
+        private final String elementName;
+        private final List<Object> steps = new ArrayList<>();
+
+        private NodeBuilder(String elementName) {
+            this.elementName = elementName;
+        }
+
+        private NodeBuilder container(String[] segments) {
+            NodeBuilder current = this;
+            for (String segment : segments) {
+                NodeBuilder next = null;
+                for (Object step : current.steps) {
+                    if (step instanceof NodeBuilder && ((NodeBuilder) step).elementName.equals(segment)) {
+                        next = (NodeBuilder) step;
+                        break;
+                    }
+                }
+                if (next == null) {
+                    next = new NodeBuilder(segment);
+                    current.steps.add(next);
+                }
+                current = next;
+            }
+            return current;
+        }
+
+        private List<Step> buildSteps() {
+            List<Step> built = new ArrayList<>(steps.size());
+            for (Object step : steps) {
+                if (step instanceof NodeBuilder) {
+                    NodeBuilder container = (NodeBuilder) step;
+                    built.add(new ContainerStep(container.elementName, container.buildSteps()));
+                } else if (step instanceof CollectionBuilder) {
+                    CollectionBuilder collection = (CollectionBuilder) step;
+                    built.add(new CollectionStep(collection.mapping, collection.containerName, collection.item.build()));
+                } else {
+                    built.add((Step) step);
+                }
+            }
+            return Collections.unmodifiableList(built);
+        }
+
+        private Node build() {
+            return new Node(elementName, buildSteps());
+        }
+    }
+
+    /**
+     * Collection declaration whose item node may still receive steps while compiling.
+     */
+    private static final class CollectionBuilder {
+        private final ExcelMappingReader.XmlMapping mapping;
+        private final String containerName;
+        private final NodeBuilder item;
+
+        private CollectionBuilder(ExcelMappingReader.XmlMapping mapping, String containerName, NodeBuilder item) {
+            this.mapping = mapping;
+            this.containerName = containerName;
+            this.item = item;
+        }
+    }
+}
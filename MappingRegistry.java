@@ -0,0 +1,222 @@
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Caches compiled mapping plans per Excel file and reloads them when the file changes.
+ * Files may be workbooks or snapshots written by {@link MappingSnapshot}.
+ *
+ * Readers get the current plan from a concurrent map without locking. Reloads parse and compile the
+ * new workbook first and then swap the entry in one step, so a reader sees either the old or the new
+ * plan, never a partially loaded one. If a changed file cannot be parsed (e.g. it is still being
+ * saved), the previous plan keeps being served, the failure is logged and the reload is retried on
+ * the next change.
+ */
+public class MappingRegistry implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(MappingRegistry.class.getName());
+
+    private final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<Path> watchedDirectories = ConcurrentHashMap.newKeySet();
+    private final WatchService watchService;
+    private final Thread watcher;
+
+    /**
+     * Creates a registry that only reloads when {@link #refresh()} is called.
+     */
+    public MappingRegistry() {
+        this.watchService = null;
+        this.watcher = null;
+    }
+
+    /**
+     * Creates a registry.
+     *
+     * @param watch Whether to watch loaded files and reload them in the background when they change.
+     * @throws IOException if the file system watch service cannot be created.
+     */
+    public MappingRegistry(boolean watch) throws IOException {
+        if (watch) {
+            this.watchService = FileSystems.getDefault().newWatchService();
+            this.watcher = new Thread(this::watchLoop, "mapping-registry-watcher");
+            this.watcher.setDaemon(true);
+            this.watcher.start();
+        } else {
+            this.watchService = null;
+            this.watcher = null;
+        }
+    }
+
+    /**
+     * Gets the compiled plan for an Excel file, loading it on first use.
+     *
+     * @param excelFilePath Path to the Excel file.
+     * @return The current plan for the file.
+     * @throws IOException If the file cannot be read on first use.
+     */
+    public MappingPlan getPlan(String excelFilePath) throws IOException {
+        Path path = Paths.get(excelFilePath).toAbsolutePath().normalize();
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            entry = loadFirst(path);
+        }
+        return entry.plan;
+    }
+
+    /**
+     * Gets the mappings for an Excel file, loading them on first use.
+     *
+     * @param excelFilePath Path to the Excel file.
+     * @return List of XmlMapping.
+     * @throws IOException If the file cannot be read on first use.
+     */
+    public List<ExcelMappingReader.XmlMapping> getMappings(String excelFilePath) throws IOException {
+        return getPlan(excelFilePath).getMappings();
+    }
+
+    /**
+     * Checks every loaded file and reloads those whose modification time, size and content changed.
+     */
+    public void refresh() {
+        for (Path path : entries.keySet()) {
+            reloadIfChanged(path);
+        }
+    }
+
+    /**
+     * Stops watching files. Already loaded plans stay available.
+     */
+    @Override
+    public void close() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    /**
+     * Loads a file for the first time; concurrent first calls for the same file load it only once.
+     */
+    private synchronized Entry loadFirst(Path path) throws IOException {
+        Entry entry = entries.get(path);
+        if (entry != null) {
+            return entry;
+        }
+        // The file state is taken before the content, so a save in between shows up as a change later
+        long lastModified = Files.getLastModifiedTime(path).toMillis();
+        long size = Files.size(path);
+        entry = load(Files.readAllBytes(path), lastModified, size);
+        entries.put(path, entry);
+        watch(path);
+        return entry;
+    }
+
+    /**
+     * Reloads a file if it differs from the loaded version, keeping the old plan on failure.
+     */
+    private void reloadIfChanged(Path path) {
+        Entry current = entries.get(path);
+        if (current == null) return;
+        try {
+            long lastModified = Files.getLastModifiedTime(path).toMillis();
+            long size = Files.size(path);
+            if (lastModified == current.lastModified && size == current.size) return;
+
+            byte[] content = Files.readAllBytes(path);
+            long checksum = checksum(content);
+            if (checksum == current.checksum) {
+                // Touched but not edited; remember the new file state so it is not read again
+                entries.replace(path, current, new Entry(current.plan, lastModified, size, checksum));
+                return;
+            }
+
+            entries.replace(path, current, load(content, lastModified, size));
+        } catch (Exception e) {
+            // Keep serving the previous plan; the next change triggers another attempt
+            LOGGER.log(Level.WARNING, "Failed to reload mappings from " + path, e);
+        }
+    }
+
+    /**
+     * Parses and compiles a workbook or mapping snapshot, recording the file state read before its content.
+     */
+    private static Entry load(byte[] content, long lastModified, long size) throws IOException {
+        List<ExcelMappingReader.XmlMapping> mappings = MappingSnapshot.isSnapshot(content)
+                ? MappingSnapshot.read(new ByteArrayInputStream(content))
+                : ExcelMappingReader.readMappingsStreaming(new ByteArrayInputStream(content));
+        return new Entry(MappingPlan.compile(mappings), lastModified, size, checksum(content));
+    }
+
+    private static long checksum(byte[] content) {
+        CRC32 crc = new CRC32();
+        crc.update(content, 0, content.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Registers the file's directory with the watch service.
+     */
+    private void watch(Path path) throws IOException {
+        if (watchService == null) return;
+        Path directory = path.getParent();
+        if (directory != null && watchedDirectories.add(directory)) {
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        }
+    }
+
+    /**
+     * Background loop reloading files reported by the watch service.
+     */
+    private void watchLoop() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path directory = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                        refresh();
+                    } else {
+                        reloadIfChanged(directory.resolve((Path) event.context()));
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ClosedWatchServiceException e) {
+            // Registry closed
+        }
+    }
+
+    /**
+     * A loaded plan together with the file state it was loaded from.
+     */
+    private static final class Entry {
+        private final MappingPlan plan;
+        private final long lastModified;
+        private final long size;
+        private final long checksum;
+
+        private Entry(MappingPlan plan, long lastModified, long size, long checksum) {
+            this.plan = plan;
+            this.lastModified = lastModified;
+            this.size = size;
+            this.checksum = checksum;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary snapshot of a mapping sheet.
+ *
+ * A snapshot is generated once from the Excel file (see {@link #main(String[])}) and loads in a
+ * fraction of the time and memory needed to parse the workbook, which matters for short-lived
+ * converter processes. Group names, data types and paths repeat across rows, so every distinct
+ * string is stored once and rows refer to it by index.
+ *
+ * Layout: magic, version, string table (count, then modified UTF-8 strings), rows (count, then six
+ * string indices per row in sheet column order). Counts and indices are unsigned varints.
+ */
+public final class MappingSnapshot {
+
+    private static final int MAGIC = 0x584D5331; // "XMS1"
+    private static final int VERSION = 1;
+    private static final int COLUMNS = 6;
+
+    private MappingSnapshot() {
+    }
+
+    /**
+     * Generates a snapshot file from an Excel mapping sheet.
+     *
+     * Usage: {@code MappingSnapshot <field_mappings.xlsx> <field_mappings.snapshot>}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: MappingSnapshot <mappings.xlsx> <snapshot file>");
+            System.exit(2);
+        }
+        List<ExcelMappingReader.XmlMapping> mappings = ExcelMappingReader.readMappingsStreaming(args[0]);
+        writeFile(mappings, args[1]);
+        System.out.println("Wrote " + mappings.size() + " mappings to " + args[1]);
+    }
+
+    /**
+     * Writes mappings to a snapshot file.
+     *
+     * @param mappings      List of XmlMapping.
+     * @param snapshotPath  Path of the snapshot file to create or replace.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void writeFile(List<ExcelMappingReader.XmlMapping> mappings, String snapshotPath) throws IOException {
+        try (OutputStream out = new FileOutputStream(snapshotPath)) {
+            write(mappings, out);
+        }
+    }
+
+    /**
+     * Reads mappings from a snapshot file.
+     *
+     * @param snapshotPath Path of the snapshot file.
+     * @return List of XmlMapping.
+     * @throws IOException If an I/O error occurs or the file is not a snapshot.
+     */
+    public static List<ExcelMappingReader.XmlMapping> readFile(String snapshotPath) throws IOException {
+        try (InputStream in = new FileInputStream(snapshotPath)) {
+            return read(in);
+        }
+    }
+
+    /**
+     * Writes mappings in snapshot format.
+     *
+     * @param mappings List of XmlMapping.
+     * @param out      The destination; it is flushed but not closed.
+     * @throws IOException If an I/O error occurs.
+     */
+    public static void write(List<ExcelMappingReader.XmlMapping> mappings, OutputStream out) throws IOException {
+        Map<String, Integer> indexes = new HashMap<>();
+        List<String> strings = new ArrayList<>();
+        int[] rows = new int[mappings.size() * COLUMNS];
+        int i = 0;
+        for (ExcelMappingReader.XmlMapping mapping : mappings) {
+            for (String value : columns(mapping)) {
+                String key = value == null ? "" : value;
+                Integer index = indexes.get(key);
+                if (index == null) {
+                    index = strings.size();
+                    indexes.put(key, index);
+                    strings.add(key);
+                }
+                rows[i++] = index;
+            }
+        }
+
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        writeVarInt(data, VERSION);
+        writeVarInt(data, strings.size());
+        for (String value : strings) {
+            data.writeUTF(value);
+        }
+        writeVarInt(data, mappings.size());
+        for (int index : rows) {
+            writeVarInt(data, index);
+        }
+        data.flush();
+    }
+
+    /**
+     * Reads mappings in snapshot format.
+     *
+     * @param in The snapshot contents; the stream is not closed.
+     * @return List of XmlMapping.
+     * @throws IOException If an I/O error occurs or the data is not a snapshot.
+     */
+    public static List<ExcelMappingReader.XmlMapping> read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a mapping snapshot.");
+        }
+        int version = readVarInt(data);
+        if (version != VERSION) {
+            throw new IOException("Unsupported mapping snapshot version: " + version);
+        }
+        String[] strings = new String[readVarInt(data)];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = data.readUTF();
+        }
+        int count = readVarInt(data);
+        List<ExcelMappingReader.XmlMapping> mappings = new ArrayList<>(count);
+        String[] row = new String[COLUMNS];
+        for (int i = 0; i < count; i++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                int index = readVarInt(data);
+                if (index >= strings.length) {
+                    throw new IOException("Corrupt mapping snapshot: string index " + index + " out of range.");
+                }
+                row[column] = strings[index];
+            }
+            mappings.add(new ExcelMappingReader.XmlMapping(row[0], row[1], row[2], row[3], row[4], row[5]));
+        }
+        return mappings;
+    }
+
+    /**
+     * Determines if the given file contents are a snapshot rather than a workbook.
+     */
+    public static boolean isSnapshot(byte[] content) {
+        return content.length >= 4
+                && ((content[0] & 0xFF) << 24 | (content[1] & 0xFF) << 16 | (content[2] & 0xFF) << 8 | (content[3] & 0xFF)) == MAGIC;
+    }
+
+    private static String[] columns(ExcelMappingReader.XmlMapping mapping) {
+        return new String[] {
+                mapping.getGroup(), mapping.getApiFieldName(), mapping.getApiDataType(),
+                mapping.getXmlElementName(), mapping.getXmlDataType(), mapping.getXmlPath()
+        };
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Corrupt mapping snapshot: malformed varint.");
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.List;
+
+public class Member {
+    private String memberId;
+    private String name;
+    private String role;
+    private List<String> technologies;
+    private List<Task> tasks;
+    private List<Campaign> campaigns;
+
+    // Constructors
+    public Member() {}
+
+    public Member(String memberId, String name, String role, List<String> technologies, List<Task> tasks, List<Campaign> campaigns) {
+        this.memberId = memberId;
+        this.name = name;
+        this.role = role;
+        this.technologies = technologies;
+        this.tasks = tasks;
+        this.campaigns = campaigns;
+    }
+
+    // Getters and Setters
+    public String getMemberId() {
+        return memberId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public List<String> getTechnologies() {
+        return technologies;
+    }
+
+    public List<Task> getTasks() {
+        return tasks;
+    }
+
+    public List<Campaign> getCampaigns() {
+        return campaigns;
+    }
+}
@@ -0,0 +1,146 @@
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Opt-in parallel conversion of independent subtrees.
+ *
+ * Items of the top-level collections (e.g. {@code Company.branches}) are partitioned into chunks that
+ * are rendered concurrently as fork-join tasks, each into its own buffer. The fragments are then
+ * stitched together in their original order, so the output is identical to
+ * {@link XmlBuilder#writeXml(MappingPlan, Object, Writer, boolean)}. Only {@link List} fields are
+ * partitioned; iterators, streams and other iterables are written sequentially.
+ */
+public class ParallelXmlBuilder {
+
+    // Aim for a few chunks per worker so uneven subtrees still balance out
+    private static final int CHUNKS_PER_WORKER = 4;
+
+    /**
+     * Streams the API response as XML, rendering top-level collections on the common pool.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent) throws Exception {
+        writeXml(plan, apiResponse, writer, indent, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Streams the API response as XML, rendering top-level collections on the given pool.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @param pool        The pool that renders collection items.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent, ForkJoinPool pool) throws Exception {
+        StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+        xmlWriter.startDocument();
+        xmlWriter.startElement(plan.getRootElementName());
+        writeTopLevelSteps(xmlWriter, plan.getRoot().getSteps(), apiResponse, indent, pool);
+        xmlWriter.endElement();
+        xmlWriter.endDocument();
+    }
+
+    /**
+     * Converts the API response object to an XML String using the common pool.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @return XML as a String.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static String buildXml(MappingPlan plan, Object apiResponse) throws Exception {
+        StringWriter writer = new StringWriter();
+        writeXml(plan, apiResponse, writer, true);
+        return writer.toString();
+    }
+
+    /**
+     * Writes the steps bound to the API response, fanning out over the items of each collection.
+     */
+    private static void writeTopLevelSteps(StreamingXmlWriter xmlWriter, List<MappingPlan.Step> steps, Object source, boolean indent, ForkJoinPool pool) throws Exception {
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.ContainerStep) {
+                MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                xmlWriter.startElement(container.getElementName());
+                writeTopLevelSteps(xmlWriter, container.getSteps(), source, indent, pool);
+                xmlWriter.endElement();
+            } else if (step instanceof MappingPlan.CollectionStep && !((MappingPlan.CollectionStep) step).isScalar()) {
+                MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                Object value = XmlBuilder.getFieldValue(source, collection.getApiFieldName());
+                if (value == null) continue;
+                if (!(value instanceof List)) {
+                    // Lazy collections cannot be partitioned up front; they are pulled sequentially instead
+                    XmlBuilder.writeCollection(xmlWriter, collection, value, null);
+                    continue;
+                }
+                xmlWriter.startElement(collection.getContainerName());
+                writeItemsInParallel(xmlWriter, collection.getItem(), (List<?>) value, indent, pool);
+                xmlWriter.endElement();
+            } else {
+                XmlBuilder.writeSteps(xmlWriter, List.of(step), source);
+            }
+        }
+    }
+
+    /**
+     * Renders chunks of items concurrently and splices the fragments back in order.
+     */
+    private static void writeItemsInParallel(StreamingXmlWriter xmlWriter, MappingPlan.Node itemNode, List<?> items, boolean indent, ForkJoinPool pool) throws Exception {
+        int depth = xmlWriter.getDepth();
+        int chunkCount = Math.min(items.size(), Math.max(1, pool.getParallelism() * CHUNKS_PER_WORKER));
+        if (chunkCount <= 1) {
+            xmlWriter.raw(renderItems(itemNode, items, indent, depth));
+            return;
+        }
+
+        int chunkSize = (items.size() + chunkCount - 1) / chunkCount;
+        List<ForkJoinTask<String>> tasks = new ArrayList<>();
+        for (int from = 0; from < items.size(); from += chunkSize) {
+            List<?> chunk = items.subList(from, Math.min(items.size(), from + chunkSize));
+            tasks.add(pool.submit(() -> renderItems(itemNode, chunk, indent, depth)));
+        }
+
+        // Fragments are written as soon as all earlier chunks are done, preserving the original order
+        try {
+            for (ForkJoinTask<String> task : tasks) {
+                xmlWriter.raw(task.get());
+            }
+        } catch (ExecutionException e) {
+            for (ForkJoinTask<String> task : tasks) {
+                task.cancel(true);
+            }
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) throw (Exception) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw e;
+        }
+    }
+
+    /**
+     * Renders a run of collection items into a standalone fragment.
+     */
+    private static String renderItems(MappingPlan.Node itemNode, List<?> items, boolean indent, int depth) throws Exception {
+        StringWriter buffer = new StringWriter();
+        StreamingXmlWriter fragmentWriter = new StreamingXmlWriter(buffer, indent, depth);
+        for (Object item : items) {
+            if (item == null) continue;
+            fragmentWriter.startElement(itemNode.getElementName());
+            XmlBuilder.writeSteps(fragmentWriter, itemNode.getSteps(), item);
+            fragmentWriter.endElement();
+        }
+        fragmentWriter.flush();
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,78 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * UTF-8 encoded document held in a buffer borrowed from a {@link ByteBufferPool}.
+ *
+ * The bytes stay valid until {@link #close()} hands the buffer back to the pool, so callers can pass
+ * them to a socket, channel or producer without copying them into a byte array first. A handle is not
+ * thread-safe and must be closed exactly once when the bytes are no longer needed.
+ */
+public final class PooledXmlBuffer implements Closeable {
+
+    private final ByteBufferPool pool;
+    private ByteBuffer buffer; // in read mode; null once released
+
+    PooledXmlBuffer(ByteBufferPool pool, ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+    }
+
+    /**
+     * Gets a read-only view of the document bytes, positioned at the first byte.
+     *
+     * @return A new view; its position and limit can be changed without affecting this handle.
+     * @throws IllegalStateException if the handle was closed.
+     */
+    public ByteBuffer getBuffer() {
+        return checkOpen().asReadOnlyBuffer();
+    }
+
+    /**
+     * Gets the length of the document in bytes.
+     */
+    public int size() {
+        return checkOpen().remaining();
+    }
+
+    /**
+     * Writes the whole document to a channel, blocking until every byte has been accepted.
+     *
+     * @param channel The destination; it is not closed.
+     * @throws IOException if the channel cannot be written.
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        ByteBuffer view = checkOpen().duplicate();
+        while (view.hasRemaining()) {
+            channel.write(view);
+        }
+    }
+
+    /**
+     * Copies the document into a new byte array.
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[size()];
+        checkOpen().duplicate().get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Returns the buffer to the pool; further calls have no effect.
+     */
+    @Override
+    public void close() {
+        ByteBuffer released = buffer;
+        buffer = null;
+        pool.release(released);
+    }
+
+    private ByteBuffer checkOpen() {
+        if (buffer == null) {
+            throw new IllegalStateException("Buffer has already been released.");
+        }
+        return buffer;
+    }
+}
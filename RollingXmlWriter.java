@@ -0,0 +1,310 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes one large conversion as a series of well-formed XML files instead of a single document.
+ *
+ * The items of one collection of the root object, e.g. {@code Company/Branches}, are split across part
+ * files once a part holds the configured number of items or bytes. Every part repeats the root element,
+ * the elements enclosing the collection and the root's other fields, so each file stands on its own;
+ * the root's other collections are written to the first part only. The byte limit applies to the
+ * uncompressed XML and is checked between items, so a part exceeds it by at most one item.
+ *
+ * Parts are named {@code <baseName>-00001.xml}, or {@code .xml.gz} with compression, and written through
+ * a {@link FileChannel} from one pooled buffer, optionally through a streaming GZIP stage, so memory stays
+ * constant with lazy collections however large the export. A writer is immutable; exports sharing a
+ * base name overwrite each other's files.
+ */
+public final class RollingXmlWriter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final MappingPlan plan;
+    private final List<MappingPlan.Step> chain; // the containers around the split collection, then the collection
+    private final Path directory;
+    private final String baseName;
+    private final long maxRecordsPerFile;
+    private final long maxBytesPerFile;
+    private final boolean gzip;
+    private final boolean indent;
+    private final ByteBufferPool pool;
+
+    /**
+     * Creates a writer producing pretty printed, uncompressed parts of at most 100000 items each.
+     *
+     * @param plan           The compiled mapping plan.
+     * @param collectionPath The XML Path of the collection to split, e.g. {@code Company/Branches}.
+     * @param directory      The directory the parts are written to.
+     * @param baseName       The file name prefix of the parts.
+     */
+    public RollingXmlWriter(MappingPlan plan, String collectionPath, Path directory, String baseName) {
+        this(plan, collectionPath, directory, baseName, 100_000, 0, false, true);
+    }
+
+    /**
+     * Creates a writer.
+     *
+     * @param plan              The compiled mapping plan.
+     * @param collectionPath    The XML Path of the collection to split, e.g. {@code Company/Branches}.
+     * @param directory         The directory the parts are written to.
+     * @param baseName          The file name prefix of the parts.
+     * @param maxRecordsPerFile The number of items per part, or 0 for no limit.
+     * @param maxBytesPerFile   The uncompressed size after which a new part is started, or 0 for no limit.
+     * @param gzip              Whether to compress the parts.
+     * @param indent            Whether to pretty print the output.
+     */
+    public RollingXmlWriter(MappingPlan plan, String collectionPath, Path directory, String baseName,
+                            long maxRecordsPerFile, long maxBytesPerFile, boolean gzip, boolean indent) {
+        if (maxRecordsPerFile < 0 || maxBytesPerFile < 0) {
+            throw new IllegalArgumentException("File limits must not be negative.");
+        }
+        List<MappingPlan.Step> chain = new ArrayList<>();
+        if (!findCollection(plan.getRoot().getSteps(), MappingPlan.normalizePath(collectionPath), chain)) {
+            throw new IllegalArgumentException("No collection of the root object mapped at XML Path: " + collectionPath);
+        }
+        this.plan = plan;
+        this.chain = Collections.unmodifiableList(chain);
+        this.directory = directory;
+        this.baseName = baseName;
+        this.maxRecordsPerFile = maxRecordsPerFile;
+        this.maxBytesPerFile = maxBytesPerFile;
+        this.gzip = gzip;
+        this.indent = indent;
+        // FileChannel writes from direct buffers without copying; the GZIP stage needs array-backed ones
+        this.pool = new ByteBufferPool(!gzip, BUFFER_SIZE, BUFFER_SIZE, 4);
+    }
+
+    /**
+     * Converts an API response into part files.
+     *
+     * On failure the parts written so far remain and the last one is incomplete.
+     *
+     * @param apiResponse The API response object.
+     * @return The files written, in order; at least one.
+     * @throws Exception if a value cannot be converted or a file cannot be written.
+     */
+    public synchronized List<Path> export(Object apiResponse) throws Exception {
+        MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) chain.get(chain.size() - 1);
+        Object value = XmlBuilder.getFieldValue(apiResponse, collection.getApiFieldName());
+        List<Path> files = new ArrayList<>();
+        Part part = null;
+        try {
+            part = openPart(apiResponse, files, value != null);
+            if (value == null) {
+                part.close(apiResponse, false);
+                return files;
+            }
+            MappingPlan.Node itemNode = collection.getItem();
+            try {
+                Iterator<?> items = XmlBuilder.iterate(value);
+                while (items.hasNext()) {
+                    Object item = items.next();
+                    if (item == null) continue;
+                    if (part.records > 0 && part.isFull()) {
+                        part.close(apiResponse, true);
+                        part = null; // a part that fails to open releases itself
+                        part = openPart(apiResponse, files, true);
+                    }
+                    if (collection.isScalar()) {
+                        part.xml.leaf(itemNode.getElementName(), item, collection.getItemConverter());
+                    } else {
+                        part.xml.startElement(itemNode.getElementName());
+                        XmlBuilder.writeSteps(part.xml, itemNode.getSteps(), item);
+                        part.xml.endElement();
+                    }
+                    part.records++;
+                }
+            } finally {
+                XmlBuilder.closeCollection(value);
+            }
+            part.close(apiResponse, true);
+            return files;
+        } catch (Exception e) {
+            if (part != null) {
+                part.abort(e);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the plan this writer converts with.
+     */
+    public MappingPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Starts the next part and writes everything in front of the first item.
+     */
+    private Part openPart(Object apiResponse, List<Path> files, boolean openCollection) throws Exception {
+        Path file = directory.resolve(String.format("%s-%05d.xml%s", baseName, files.size() + 1, gzip ? ".gz" : ""));
+        Part part = new Part(file, files.isEmpty());
+        files.add(file);
+        try {
+            part.xml.startDocument();
+            part.xml.startElement(plan.getRootElementName());
+            List<MappingPlan.Step> steps = plan.getRoot().getSteps();
+            for (MappingPlan.Step link : chain) {
+                int index = steps.indexOf(link);
+                part.writeSteps(steps.subList(0, index), apiResponse);
+                if (link instanceof MappingPlan.ContainerStep) {
+                    part.xml.startElement(((MappingPlan.ContainerStep) link).getElementName());
+                    steps = ((MappingPlan.ContainerStep) link).getSteps();
+                } else if (openCollection) {
+                    part.xml.startElement(((MappingPlan.CollectionStep) link).getContainerName());
+                }
+            }
+        } catch (Exception e) {
+            part.abort(e);
+            throw e;
+        }
+        return part;
+    }
+
+    /**
+     * Finds the collection mapped at the given path among the steps, recording the containers around it.
+     */
+    private static boolean findCollection(List<MappingPlan.Step> steps, String path, List<MappingPlan.Step> chain) {
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.CollectionStep) {
+                MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                if (MappingPlan.normalizePath(collection.getMapping().getXmlPath()).equals(path)) {
+                    chain.add(step);
+                    return true;
+                }
+            } else if (step instanceof MappingPlan.ContainerStep) {
+                chain.add(step);
+                if (findCollection(((MappingPlan.ContainerStep) step).getSteps(), path, chain)) {
+                    return true;
+                }
+                chain.remove(chain.size() - 1);
+            }
+        }
+        return false;
+    }
+
+    /**
+     * One open part file.
+     */
+    private final class Part {
+        private final FileChannel channel;
+        private final WritableByteChannel target; // the file, or the GZIP stage in front of it
+        private final Utf8BufferWriter bytes;
+        private final StreamingXmlWriter xml;
+        private final boolean first;
+        private long records;
+
+        private Part(Path file, boolean first) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+            WritableByteChannel target = null;
+            try {
+                if (gzip) {
+                    OutputStream compressed = new GZIPOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE);
+                    target = Channels.newChannel(compressed);
+                } else {
+                    target = channel;
+                }
+                this.target = target;
+                this.bytes = new Utf8BufferWriter(pool, target);
+            } catch (Throwable e) {
+                // Not a part yet, so nobody else will close the file
+                try {
+                    if (target != null) {
+                        target.close();
+                    }
+                    channel.close();
+                } catch (IOException suppressed) {
+                    e.addSuppressed(suppressed);
+                }
+                throw e;
+            }
+            this.xml = new StreamingXmlWriter(bytes, indent);
+            this.first = first;
+        }
+
+        /**
+         * Determines if the part has reached a limit; the few KB still buffered as characters are not counted.
+         */
+        private boolean isFull() {
+            return (maxRecordsPerFile > 0 && records >= maxRecordsPerFile)
+                    || (maxBytesPerFile > 0 && bytes.getBytesWritten() >= maxBytesPerFile);
+        }
+
+        /**
+         * Writes steps outside the split collection; other collections, also those within containers, go to the first part only.
+         */
+        private void writeSteps(List<MappingPlan.Step> steps, Object apiResponse) throws Exception {
+            if (first) {
+                XmlBuilder.writeSteps(xml, steps, apiResponse);
+                return;
+            }
+            for (MappingPlan.Step step : steps) {
+                if (step instanceof MappingPlan.ContainerStep) {
+                    MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                    xml.startElement(container.getElementName());
+                    writeSteps(container.getSteps(), apiResponse);
+                    xml.endElement();
+                } else if (!(step instanceof MappingPlan.CollectionStep)) {
+                    XmlBuilder.writeSteps(xml, Collections.singletonList(step), apiResponse);
+                }
+            }
+        }
+
+        /**
+         * Writes everything behind the last item, ends the document and closes the file.
+         */
+        private void close(Object apiResponse, boolean collectionOpen) throws Exception {
+            List<List<MappingPlan.Step>> levels = new ArrayList<>();
+            List<MappingPlan.Step> steps = plan.getRoot().getSteps();
+            for (MappingPlan.Step link : chain) {
+                levels.add(steps);
+                if (link instanceof MappingPlan.ContainerStep) {
+                    steps = ((MappingPlan.ContainerStep) link).getSteps();
+                }
+            }
+            for (int i = chain.size() - 1; i >= 0; i--) {
+                MappingPlan.Step link = chain.get(i);
+                if (link instanceof MappingPlan.ContainerStep || collectionOpen) {
+                    xml.endElement();
+                }
+                List<MappingPlan.Step> level = levels.get(i);
+                writeSteps(level.subList(level.indexOf(link) + 1, level.size()), apiResponse);
+            }
+            xml.endElement();
+            xml.endDocument();
+            xml.flush();
+            bytes.close();
+            // Closing the GZIP stage writes its trailer and closes the file as well
+            target.close();
+            channel.close();
+        }
+
+        /**
+         * Releases the buffer and the file after a failure, keeping their errors with the failure.
+         */
+        private void abort(Exception failure) {
+            try {
+                bytes.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+            try {
+                target.close();
+                channel.close();
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,297 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Hand-rolled streaming XML writer.
+ *
+ * Writes elements to a {@link Writer} through a small internal buffer as they are produced, so peak
+ * memory does not grow with the size of the document. Output matches the DOM serializer: an XML declaration, optional
+ * four-space indentation and self-closing tags for empty elements.
+ */
+public class StreamingXmlWriter implements XmlSink, XmlTextOutput {
+
+    private static final int INDENT_AMOUNT = 4;
+    private static final int BUFFER_SIZE = 2048;
+    private static final String SPACES = "                                                                ";
+
+    private final Writer writer;
+    private final boolean indent;
+    private final int baseDepth;
+
+    private String[] openElements = new String[16];
+    private boolean[] hasChildElements = new boolean[16];
+    private int depth;
+    private boolean startTagOpen;
+    private boolean started;
+    private final char[] digits = new char[20];
+
+    // Characters are collected here and handed to the writer in blocks; small writes are costly on most writers
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private int pos;
+
+    /**
+     * Creates a writer.
+     *
+     * @param writer The destination; it is flushed but never closed by this class.
+     * @param indent Whether to pretty print the output.
+     */
+    public StreamingXmlWriter(Writer writer, boolean indent) {
+        this.writer = writer;
+        this.indent = indent;
+        this.baseDepth = 0;
+    }
+
+    /**
+     * Creates a writer for a fragment that will later be spliced into a document with {@link #raw(String)}.
+     *
+     * @param writer    The destination; it is flushed but never closed by this class.
+     * @param indent    Whether to pretty print the output.
+     * @param baseDepth The depth at which the fragment's first elements will sit in the final document.
+     */
+    public StreamingXmlWriter(Writer writer, boolean indent, int baseDepth) {
+        this.writer = writer;
+        this.indent = indent;
+        this.baseDepth = baseDepth;
+        this.started = true;
+    }
+
+    /**
+     * Writes the XML declaration.
+     */
+    public void startDocument() throws IOException {
+        write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>");
+        started = true;
+    }
+
+    /**
+     * Closes any open elements and flushes the destination.
+     */
+    public void endDocument() throws IOException {
+        while (depth > 0) {
+            endElement();
+        }
+        if (indent && started) {
+            write('\n');
+        }
+        flush();
+    }
+
+    /**
+     * Gets the indentation depth at which the next child element would be written.
+     */
+    public int getDepth() {
+        return baseDepth + depth;
+    }
+
+    /**
+     * Writes an already serialized fragment as children of the current element.
+     * The fragment must have been produced by a fragment writer created for {@link #getDepth()}.
+     *
+     * @param fragment The serialized XML fragment.
+     * @throws IOException if the fragment cannot be written.
+     */
+    public void raw(String fragment) throws IOException {
+        if (fragment.isEmpty()) return;
+        closeStartTag();
+        if (depth > 0) {
+            hasChildElements[depth - 1] = true;
+        }
+        write(fragment);
+    }
+
+    /**
+     * Flushes the destination without closing open elements.
+     */
+    public void flush() throws IOException {
+        flushBuffer();
+        writer.flush();
+    }
+
+    @Override
+    public void startElement(String name) throws IOException {
+        closeStartTag();
+        if (depth > 0) {
+            hasChildElements[depth - 1] = true;
+        }
+        if (indent && started) {
+            newLine(baseDepth + depth);
+        }
+        write('<');
+        write(name);
+        if (depth == openElements.length) {
+            openElements = Arrays.copyOf(openElements, depth * 2);
+            hasChildElements = Arrays.copyOf(hasChildElements, depth * 2);
+        }
+        openElements[depth] = name;
+        hasChildElements[depth] = false;
+        depth++;
+        startTagOpen = true;
+        started = true;
+    }
+
+    @Override
+    public void text(String value) throws IOException {
+        if (value == null || value.isEmpty()) return;
+        closeStartTag();
+        writeEscaped(value);
+    }
+
+    @Override
+    public void endElement() throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("No open element to close.");
+        }
+        depth--;
+        String name = openElements[depth];
+        openElements[depth] = null;
+        if (startTagOpen) {
+            write("/>");
+            startTagOpen = false;
+            return;
+        }
+        if (indent && hasChildElements[depth]) {
+            newLine(baseDepth + depth);
+        }
+        write("</");
+        write(name);
+        write('>');
+    }
+
+    @Override
+    public void leaf(String name, Object value, ValueConverter converter) throws IOException {
+        if (!converter.isDirect()) {
+            XmlSink.super.leaf(name, value, converter);
+            return;
+        }
+        startElement(name);
+        closeStartTag();
+        converter.write(value, this);
+        endElement();
+    }
+
+    @Override
+    public void appendText(String value) throws IOException {
+        text(value);
+    }
+
+    @Override
+    public void appendPlain(String value) throws IOException {
+        closeStartTag();
+        write(value);
+    }
+
+    @Override
+    public void appendLong(long value) throws IOException {
+        closeStartTag();
+        if (value == Long.MIN_VALUE) {
+            write(Long.toString(value));
+            return;
+        }
+        int pos = digits.length;
+        long remaining = Math.abs(value);
+        do {
+            digits[--pos] = (char) ('0' + (int) (remaining % 10));
+            remaining /= 10;
+        } while (remaining != 0);
+        if (value < 0) {
+            digits[--pos] = '-';
+        }
+        write(digits, pos, digits.length - pos);
+    }
+
+    /**
+     * Finishes a pending start tag so content can follow.
+     */
+    private void closeStartTag() throws IOException {
+        if (startTagOpen) {
+            write('>');
+            startTagOpen = false;
+        }
+    }
+
+    /**
+     * Writes a line break followed by the indentation for the given depth.
+     */
+    private void newLine(int level) throws IOException {
+        write('\n');
+        for (int remaining = level * INDENT_AMOUNT; remaining > 0; remaining -= SPACES.length()) {
+            write(SPACES, 0, Math.min(remaining, SPACES.length()));
+        }
+    }
+
+    private void write(char c) throws IOException {
+        if (pos == buffer.length) {
+            flushBuffer();
+        }
+        buffer[pos++] = c;
+    }
+
+    private void write(String value) throws IOException {
+        write(value, 0, value.length());
+    }
+
+    private void write(String value, int offset, int length) throws IOException {
+        if (length > buffer.length - pos) {
+            flushBuffer();
+            if (length > buffer.length) {
+                writer.write(value, offset, length);
+                return;
+            }
+        }
+        value.getChars(offset, offset + length, buffer, pos);
+        pos += length;
+    }
+
+    private void write(char[] chars, int offset, int length) throws IOException {
+        if (length > buffer.length - pos) {
+            flushBuffer();
+            if (length > buffer.length) {
+                writer.write(chars, offset, length);
+                return;
+            }
+        }
+        System.arraycopy(chars, offset, buffer, pos, length);
+        pos += length;
+    }
+
+    /**
+     * Hands the buffered characters to the destination writer.
+     */
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            writer.write(buffer, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Writes text content, escaping markup characters in runs rather than per character.
+     */
+    private void writeEscaped(String value) throws IOException {
+        int start = 0;
+        for (int i = 0, n = value.length(); i < n; i++) {
+            String replacement;
+            switch (value.charAt(i)) {
+                case '&':
+                    replacement = "&amp;";
+                    break;
+                case '<':
+                    replacement = "&lt;";
+                    break;
+                case '>':
+                    replacement = "&gt;";
+                    break;
+                case '\r':
+                    replacement = "&#13;";
+                    break;
+                default:
+                    continue;
+            }
+            write(value, start, i - start);
+            write(replacement);
+            start = i + 1;
+        }
+        write(value, start, value.length() - start);
+    }
+}
@@ -0,0 +1,27 @@
+public class Task {
+    private String taskId;
+    private String title;
+    private String status;
+
+    // Constructors
+    public Task() {}
+
+    public Task(String taskId, String title, String status) {
+        this.taskId = taskId;
+        this.title = title;
+        this.status = status;
+    }
+
+    // Getters and Setters
+    public String getTaskId() {
+        return taskId;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,23 @@
+import java.util.List;
+
+public class Team {
+    private String teamName;
+    private List<Member> members;
+
+    // Constructors
+    public Team() {}
+
+    public Team(String teamName, List<Member> members) {
+        this.teamName = teamName;
+        this.members = members;
+    }
+
+    // Getters and Setters
+    public String getTeamName() {
+        return teamName;
+    }
+
+    public List<Member> getMembers() {
+        return members;
+    }
+}
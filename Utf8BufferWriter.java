@@ -0,0 +1,192 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writer that encodes characters as UTF-8 straight into pooled ByteBuffers.
+ *
+ * Without a channel the buffer grows by trading it for a larger one from the pool and the finished
+ * document is handed over with {@link #toPooledBuffer()}. With a channel a single pooled buffer is
+ * drained to the channel whenever it fills up, so memory stays constant however large the document.
+ * Heap buffers are encoded into directly; direct buffers are filled from a small heap block, since
+ * the JDK's fast ASCII path only applies to array-backed buffers. Unpaired surrogates are written as
+ * {@code '?'}, like {@link String#getBytes(java.nio.charset.Charset)} does.
+ */
+final class Utf8BufferWriter extends Writer {
+
+    private static final int SCRATCH_SIZE = 4096;
+
+    private final ByteBufferPool pool;
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final ByteBuffer scratch; // null for heap buffers
+    private final char[] pair = new char[2];
+    private ByteBuffer buffer;
+    private char pendingHighSurrogate;
+    private long drained; // bytes handed to the channel so far
+
+    /**
+     * Creates a writer collecting the document in a growing buffer.
+     *
+     * @param expectedSize The expected document size in bytes, used to size the first buffer.
+     */
+    Utf8BufferWriter(ByteBufferPool pool, int expectedSize) {
+        this(pool, null, expectedSize);
+    }
+
+    /**
+     * Creates a writer draining to a channel.
+     */
+    Utf8BufferWriter(ByteBufferPool pool, WritableByteChannel channel) {
+        this(pool, channel, 0);
+    }
+
+    private Utf8BufferWriter(ByteBufferPool pool, WritableByteChannel channel, int expectedSize) {
+        this.pool = pool;
+        this.channel = channel;
+        this.buffer = pool.acquire(expectedSize);
+        this.scratch = buffer.hasArray() ? null : ByteBuffer.allocate(SCRATCH_SIZE);
+    }
+
+    @Override
+    public void write(char[] chars, int offset, int length) throws IOException {
+        if (buffer == null) {
+            throw new IOException("Writer closed");
+        }
+        if (length == 0) {
+            return;
+        }
+        if (pendingHighSurrogate != 0) {
+            // Complete a surrogate pair split between two writes
+            pair[0] = pendingHighSurrogate;
+            pair[1] = chars[offset];
+            pendingHighSurrogate = 0;
+            encode(CharBuffer.wrap(pair));
+            offset++;
+            length--;
+        }
+        encode(CharBuffer.wrap(chars, offset, length));
+    }
+
+    /**
+     * Drains the buffered bytes to the channel, if there is one.
+     */
+    @Override
+    public void flush() throws IOException {
+        if (channel != null && buffer != null) {
+            drain();
+        }
+    }
+
+    /**
+     * Flushes to the channel, if there is one, and releases the buffer; a collected document is discarded.
+     */
+    @Override
+    public void close() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        try {
+            flushPendingSurrogate();
+            flush();
+        } finally {
+            pool.release(buffer);
+            buffer = null;
+        }
+    }
+
+    /**
+     * Gets the number of bytes encoded so far, whether still buffered or already drained to the channel.
+     */
+    long getBytesWritten() {
+        return drained + (buffer != null ? buffer.position() : 0);
+    }
+
+    /**
+     * Hands the collected document over; the writer must not be used afterwards.
+     */
+    PooledXmlBuffer toPooledBuffer() throws IOException {
+        flushPendingSurrogate();
+        ByteBuffer document = buffer;
+        buffer = null;
+        document.flip();
+        return new PooledXmlBuffer(pool, document);
+    }
+
+    /**
+     * Encodes the input, keeping a trailing high surrogate back until the next write.
+     */
+    private void encode(CharBuffer input) throws IOException {
+        ByteBuffer target = scratch != null ? scratch : buffer;
+        while (encoder.encode(input, target, false).isOverflow()) {
+            if (scratch != null) {
+                copyScratch();
+            } else {
+                // The next character may need more bytes than remain, so always make more room
+                makeRoom(buffer.remaining() + 1);
+                target = buffer;
+            }
+        }
+        if (scratch != null) {
+            copyScratch();
+        }
+        if (input.hasRemaining()) {
+            pendingHighSurrogate = input.get();
+        }
+    }
+
+    private void flushPendingSurrogate() throws IOException {
+        if (pendingHighSurrogate != 0) {
+            pendingHighSurrogate = 0;
+            makeRoom(1);
+            buffer.put((byte) '?');
+        }
+    }
+
+    /**
+     * Moves the bytes encoded into the scratch block to the direct buffer.
+     */
+    private void copyScratch() throws IOException {
+        scratch.flip();
+        makeRoom(scratch.remaining());
+        buffer.put(scratch);
+        scratch.clear();
+    }
+
+    /**
+     * Drains or grows the buffer until it has room for the given number of bytes.
+     */
+    private void makeRoom(int bytes) throws IOException {
+        while (buffer.remaining() < bytes) {
+            if (channel != null && buffer.position() > 0) {
+                drain();
+            } else {
+                grow();
+            }
+        }
+    }
+
+    private void grow() {
+        ByteBuffer larger = pool.acquire(buffer.capacity() * 2);
+        buffer.flip();
+        larger.put(buffer);
+        pool.release(buffer);
+        buffer = larger;
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        drained += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,17 @@
+/**
+ * Reads one named property of API objects, e.g. a field, a getter or a map entry.
+ *
+ * Accessors are resolved once per (class, property name) pair by {@link ValueAccessors} and shared
+ * by all threads, so implementations must be thread-safe.
+ */
+public interface ValueAccessor {
+
+    /**
+     * Reads the property from the given object.
+     *
+     * @param target The object to read from.
+     * @return The property value, or null.
+     * @throws Exception if the property cannot be read.
+     */
+    Object get(Object target) throws Exception;
+}
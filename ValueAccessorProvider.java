@@ -0,0 +1,18 @@
+/**
+ * Service provider interface for reading properties of API objects the built-in accessors do not handle.
+ *
+ * Providers are discovered with {@link java.util.ServiceLoader} from
+ * {@code META-INF/services/ValueAccessorProvider} and asked in turn, before the built-in accessors,
+ * whenever a class and property name are resolved for the first time.
+ */
+public interface ValueAccessorProvider {
+
+    /**
+     * Resolves the accessor for a property of a class.
+     *
+     * @param type The class of the objects that will be read.
+     * @param name The property name, i.e. the API field name of a mapping.
+     * @return The accessor, or null to leave the property to the next provider.
+     */
+    ValueAccessor accessorFor(Class<?> type, String name);
+}
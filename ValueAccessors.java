@@ -0,0 +1,198 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.InaccessibleObjectException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves and caches the {@link ValueAccessor} reading a property of API objects.
+ *
+ * The accessor for a (class, property name) pair is chosen once and reused afterwards. Providers
+ * registered through {@link ValueAccessorProvider} are asked first, then the built-in accessors apply:
+ * <ul>
+ *     <li>{@link Map} payloads are read with {@code get} for the property name as key.</li>
+ *     <li>Records are read through the canonical accessor of the component.</li>
+ *     <li>Other classes are read through the field, as {@link FieldAccessor} does.</li>
+ *     <li>Classes without such a field are read through a public {@code getX()} or {@code isX()} method.</li>
+ * </ul>
+ * If none applies, reading fails with a {@link NoSuchFieldException} like a missing field.
+ */
+public final class ValueAccessors {
+
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final List<ValueAccessorProvider> PROVIDERS = loadProviders();
+
+    private static final ClassValue<Map<String, ValueAccessor>> CACHE = new ClassValue<Map<String, ValueAccessor>>() {
+        @Override
+        protected Map<String, ValueAccessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    private ValueAccessors() {
+    }
+
+    /**
+     * Returns the cached accessor for a property, resolving it on first use.
+     *
+     * @param type The class of the objects that will be read.
+     * @param name The property name.
+     * @return The accessor; reading through it fails if the class has no such property.
+     */
+    public static ValueAccessor forProperty(Class<?> type, String name) {
+        Map<String, ValueAccessor> accessors = CACHE.get(type);
+        ValueAccessor accessor = accessors.get(name);
+        if (accessor == null) {
+            accessor = accessors.computeIfAbsent(name, key -> resolve(type, key));
+        }
+        return accessor;
+    }
+
+    /**
+     * Resolves a property once: the registered providers first, then the built-in accessors.
+     */
+    private static ValueAccessor resolve(Class<?> type, String name) {
+        for (ValueAccessorProvider provider : PROVIDERS) {
+            ValueAccessor accessor = provider.accessorFor(type, name);
+            if (accessor != null) {
+                return accessor;
+            }
+        }
+        if (Map.class.isAssignableFrom(type)) {
+            return new MapAccessor(name);
+        }
+        if (type.isRecord()) {
+            for (RecordComponent component : type.getRecordComponents()) {
+                if (component.getName().equals(name)) {
+                    return new MethodAccessor(type, name, component.getAccessor());
+                }
+            }
+        }
+        FieldAccessor field = FieldAccessor.forField(type, name);
+        if (field.isPresent()) {
+            return field;
+        }
+        Method getter = findGetter(type, name);
+        return getter != null ? new MethodAccessor(type, name, getter) : field;
+    }
+
+    /**
+     * Determines if a registered provider supplies the accessor for a property.
+     */
+    static boolean hasProvider(Class<?> type, String name) {
+        for (ValueAccessorProvider provider : PROVIDERS) {
+            if (provider.accessorFor(type, name) != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds a public, non-static getter following the JavaBeans naming convention.
+     */
+    static Method findGetter(Class<?> type, String name) {
+        if (name.isEmpty()) return null;
+        String suffix = Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        for (String methodName : new String[]{"get" + suffix, "is" + suffix}) {
+            try {
+                Method method = type.getMethod(methodName);
+                if (!Modifier.isStatic(method.getModifiers()) && method.getReturnType() != void.class
+                        && (methodName.startsWith("get") || method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                    return method;
+                }
+            } catch (NoSuchMethodException ignored) {
+                // Try the next naming convention
+            }
+        }
+        return null;
+    }
+
+    private static List<ValueAccessorProvider> loadProviders() {
+        List<ValueAccessorProvider> providers = new ArrayList<>();
+        for (ValueAccessorProvider provider : ServiceLoader.load(ValueAccessorProvider.class)) {
+            providers.add(provider);
+        }
+        return Collections.unmodifiableList(providers);
+    }
+
+    /**
+     * Reads a map entry; a missing key reads as null.
+     */
+    private static final class MapAccessor implements ValueAccessor {
+        private final String key;
+
+        private MapAccessor(String key) {
+            this.key = key;
+        }
+
+        @Override
+        public Object get(Object target) {
+            return ((Map<?, ?>) target).get(key);
+        }
+    }
+
+    /**
+     * Reads a property through a no-argument method, e.g. a record component accessor or a getter.
+     */
+    private static final class MethodAccessor implements ValueAccessor {
+        private final Class<?> owner;
+        private final String name;
+        private final MethodHandle handle; // null if the method cannot be accessed
+        private final String inaccessible; // why the method cannot be accessed, or null
+
+        private MethodAccessor(Class<?> owner, String name, Method method) {
+            this.owner = owner;
+            this.name = name;
+            MethodHandle handle = null;
+            String inaccessible = null;
+            try {
+                handle = unreflect(method).asType(GETTER_TYPE);
+            } catch (InaccessibleObjectException denied) {
+                // Fail on read, like a field of a class in a module that is not open to us
+                inaccessible = denied.getMessage();
+            } catch (IllegalAccessException denied) {
+                inaccessible = "Method '" + method.getName() + "' of " + method.getDeclaringClass().getName() + " is not accessible";
+            }
+            this.handle = handle;
+            this.inaccessible = inaccessible;
+        }
+
+        @Override
+        public Object get(Object target) throws Exception {
+            if (handle == null) {
+                throw new InaccessibleObjectException(inaccessible);
+            }
+            try {
+                return handle.invokeExact(target);
+            } catch (Exception | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Error reading property '" + name + "' of " + owner.getName(), t);
+            }
+        }
+
+        private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+            try {
+                return MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup()).unreflect(method);
+            } catch (IllegalAccessException e) {
+                // Classes in modules that are not open to us: their exported public API, else a reflective handle
+                try {
+                    return MethodHandles.publicLookup().unreflect(method);
+                } catch (IllegalAccessException notPublic) {
+                    method.setAccessible(true);
+                    return MethodHandles.lookup().unreflect(method);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+import java.io.IOException;
+
+/**
+ * Converts values of one (API data type, XML data type) pair.
+ *
+ * Instances are resolved once per pair by {@link DataTypeConverter#forTypes(String, String)} and are
+ * immutable and thread-safe, so the mapping plan can keep them for every leaf value it writes.
+ */
+public interface ValueConverter {
+
+    /**
+     * Converts a value to its XML text.
+     *
+     * @param value The value to convert.
+     * @return The converted value, or null if the value is null.
+     * @throws IllegalArgumentException if conversion fails.
+     */
+    String convert(Object value) throws IllegalArgumentException;
+
+    /**
+     * Determines if {@link #write(Object, XmlTextOutput)} can be used for non-null values.
+     * Direct converters never produce empty text, so the element can be opened before converting.
+     */
+    default boolean isDirect() {
+        return false;
+    }
+
+    /**
+     * Writes a non-null value straight to the output without building an intermediate String.
+     *
+     * @param value The value to convert; never null.
+     * @param out   The output positioned inside the open element.
+     * @throws IOException if the output cannot be written.
+     * @throws IllegalArgumentException if conversion fails.
+     */
+    default void write(Object value, XmlTextOutput out) throws IOException {
+        out.appendText(convert(value));
+    }
+}
@@ -1,15 +1,25 @@
 import org.w3c.dom.*;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.transform.*;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamResult;
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.StringWriter;
-import java.lang.reflect.Field;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.stream.BaseStream;
 
 public class XmlBuilder {
 
+    // Factories are looked up once per thread; builders and transformers are not thread-safe but reusable
+    private static final ThreadLocal<DocumentBuilder> DOCUMENT_BUILDER = ThreadLocal.withInitial(XmlBuilder::newDocumentBuilder);
+    private static final ThreadLocal<Transformer> TRANSFORMER = ThreadLocal.withInitial(XmlBuilder::newTransformer);
+
     /**
      * Converts the API response object to XML based on the provided mappings.
      *
@@ -19,250 +29,434 @@ public class XmlBuilder {
      * @throws Exception if an error occurs during conversion.
      */
     public static String buildXml(List<ExcelMappingReader.XmlMapping> mappings, Object apiResponse) throws Exception {
-        // Create a new XML Document
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document document = builder.newDocument();
-
-        // Determine the root element from mappings (assume first mapping's XML Path root)
-        String rootPath = getRootPath(mappings);
-        String rootElementName = getLastPathSegment(rootPath);
-        Element rootElement = document.createElement(rootElementName);
-        document.appendChild(rootElement);
-
-        // Group mappings by their "Group" column
-        Map<String, List<ExcelMappingReader.XmlMapping>> groupMap = groupMappingsByGroup(mappings);
-
-        // Iterate through each group to build XML
-        for (Map.Entry<String, List<ExcelMappingReader.XmlMapping>> entry : groupMap.entrySet()) {
-            String group = entry.getKey();
-            List<ExcelMappingReader.XmlMapping> groupMappings = entry.getValue();
-
-            switch (group) {
-                case "Company":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                case "Branch":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                case "Team":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                case "Member":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                case "Technology":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                case "Task":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                case "Campaign":
-                    handleGroup(document, rootElement, groupMappings, apiResponse);
-                    break;
-                default:
-                    // Handle unknown groups or skip
-                    break;
-            }
-        }
+        return buildXml(MappingPlan.compile(mappings), apiResponse);
+    }
+
+    /**
+     * Converts the API response object to XML based on a precompiled mapping plan.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @return XML as a String.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static String buildXml(MappingPlan plan, Object apiResponse) throws Exception {
+        return buildXml(plan, apiResponse, ConversionListener.NOOP);
+    }
+
+    /**
+     * Converts the API response object to XML, reporting timings and counters to a listener.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param listener    Receives the metrics of the conversion; {@link ConversionListener#NOOP} disables instrumentation.
+     * @return XML as a String.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static String buildXml(MappingPlan plan, Object apiResponse, ConversionListener listener) throws Exception {
+        return buildXml(plan, apiResponse, listener, null);
+    }
+
+    /**
+     * Converts the API response object to XML leniently: values that fail to convert are recorded in
+     * the report and their elements omitted or given the report's default, instead of aborting.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param report      Receives the values that failed.
+     * @return XML as a String.
+     * @throws Exception if an error other than a failed value conversion occurs.
+     */
+    public static String buildXml(MappingPlan plan, Object apiResponse, ConversionReport report) throws Exception {
+        return buildXml(plan, apiResponse, ConversionListener.NOOP, report);
+    }
+
+    private static String buildXml(MappingPlan plan, Object apiResponse, ConversionListener listener, ConversionReport report) throws Exception {
+        ConversionMetrics metrics = ConversionMetrics.start(plan, listener, report, -1);
+        long start = metrics != null ? System.nanoTime() : 0;
+
+        // Create a new XML Document with this thread's builder
+        Document document = DOCUMENT_BUILDER.get().newDocument();
+
+        // Walk the precompiled node tree, starting with the API response bound to the root element
+        writeDocument(plan, apiResponse, new DomSink(document), metrics);
+        long built = metrics != null ? System.nanoTime() : 0;
 
         // Convert the Document to a String
-        return transformDocumentToString(document);
+        String xml = transformDocumentToString(document);
+        if (metrics != null) {
+            metrics.finish(built - start, System.nanoTime() - built);
+        }
+        return xml;
+    }
+
+    /**
+     * Streams the API response as XML to a Writer without building a DOM.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent) throws Exception {
+        writeXml(plan, apiResponse, writer, indent, ConversionListener.NOOP);
+    }
+
+    /**
+     * Streams the API response as XML to a Writer, reporting timings and counters to a listener.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @param listener    Receives the metrics of the conversion; {@link ConversionListener#NOOP} disables instrumentation.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent, ConversionListener listener) throws Exception {
+        writeXml(plan, apiResponse, writer, indent, listener, null, -1);
     }
 
     /**
-     * Determines the root path from the first mapping.
+     * Streams the API response as XML to a Writer, optionally reporting metrics and converting leniently.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @param listener    Receives the metrics of the conversion; {@link ConversionListener#NOOP} disables instrumentation.
+     * @param report      Receives the values that failed to convert, whose elements are then omitted or
+     *                    given the report's default; null to abort on the first failure.
+     * @throws Exception if an error other than a reported value conversion occurs.
+     */
+    public static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent,
+                                ConversionListener listener, ConversionReport report) throws Exception {
+        writeXml(plan, apiResponse, writer, indent, listener, report, -1);
+    }
+
+    /**
+     * Streams the API response as XML, reporting failed values against the given batch record.
      */
-    private static String getRootPath(List<ExcelMappingReader.XmlMapping> mappings) {
-        if (mappings.isEmpty()) {
-            throw new IllegalArgumentException("No mappings provided.");
+    static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent,
+                         ConversionListener listener, ConversionReport report, long record) throws Exception {
+        ConversionMetrics metrics = ConversionMetrics.start(plan, listener, report, record);
+        long start = metrics != null ? System.nanoTime() : 0;
+        StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+        xmlWriter.startDocument();
+        writeDocument(plan, apiResponse, xmlWriter, metrics);
+        xmlWriter.endDocument();
+        if (metrics != null) {
+            metrics.finish(System.nanoTime() - start, 0);
         }
-        return mappings.get(0).getXmlPath().split("/")[0];
     }
 
     /**
-     * Gets the last segment of an XML path.
+     * Streams the API response as XML to a Writer, validating every element as it is written.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param writer      The destination; it is flushed but not closed, and holds partial output if validation fails.
+     * @param indent      Whether to pretty print the output.
+     * @param validator   The validator compiled for the plan.
+     * @throws XmlValidationException if the document breaks the mapping rules or the schema.
+     * @throws Exception if another error occurs during conversion.
+     */
+    public static void writeXml(MappingPlan plan, Object apiResponse, Writer writer, boolean indent, XmlValidator validator) throws Exception {
+        StreamingXmlWriter xmlWriter = new StreamingXmlWriter(writer, indent);
+        xmlWriter.startDocument();
+        writeDocument(plan, apiResponse, validator.wrap(xmlWriter), null);
+        xmlWriter.endDocument();
+    }
+
+    /**
+     * Streams the API response as UTF-8 encoded XML to an OutputStream without building a DOM.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param out         The destination; it is flushed but not closed.
+     * @param indent      Whether to pretty print the output.
+     * @throws Exception if an error occurs during conversion.
      */
-    private static String getLastPathSegment(String path) {
-        String[] parts = path.split("/");
-        return parts[parts.length - 1];
+    public static void writeXml(MappingPlan plan, Object apiResponse, OutputStream out, boolean indent) throws Exception {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeXml(plan, apiResponse, writer, indent);
     }
 
     /**
-     * Groups mappings by their "Group" column.
+     * Emits the root element and everything below it to the sink.
      */
-    private static Map<String, List<ExcelMappingReader.XmlMapping>> groupMappingsByGroup(List<ExcelMappingReader.XmlMapping> mappings) {
-        Map<String, List<ExcelMappingReader.XmlMapping>> grouped = new HashMap<>();
-        for (ExcelMappingReader.XmlMapping mapping : mappings) {
-            grouped.computeIfAbsent(mapping.getGroup(), k -> new ArrayList<>()).add(mapping);
+    private static void writeDocument(MappingPlan plan, Object apiResponse, XmlSink sink, ConversionMetrics metrics) throws Exception {
+        sink.startElement(plan.getRootElementName());
+        writeSteps(sink, plan.getRoot().getSteps(), apiResponse, metrics);
+        sink.endElement();
+        if (metrics != null) {
+            metrics.elementsEmitted++;
         }
-        return grouped;
     }
 
     /**
-     * Handles the creation of XML elements for a specific group.
+     * Emits the elements described by the given plan steps for one source object.
      */
-    private static void handleGroup(Document document, Element rootElement, List<ExcelMappingReader.XmlMapping> groupMappings, Object apiResponse) throws Exception {
-        for (ExcelMappingReader.XmlMapping mapping : groupMappings) {
-            String xmlPath = mapping.getXmlPath();
-            String xmlElementName = mapping.getXmlElementName();
-            String apiFieldName = mapping.getApiFieldName();
-            String apiDataType = mapping.getApiDataType();
-            String xmlDataType = mapping.getXmlDataType();
-
-            // Extract the object at the current XML Path
-            Object currentObject = extractObject(apiResponse, xmlPath);
-
-            if (currentObject == null) continue;
-
-            // Check if the current path represents a collection
-            if (apiDataType.startsWith("List<")) {
-                List<?> list = (List<?>) currentObject;
-                // Determine the singular form of the collection element
-                String singularName = getSingularForm(getLastPathSegment(xmlPath));
-                // Create parent container if necessary
-                Element parentContainer = getOrCreateParentContainer(document, rootElement, xmlPath);
-                for (Object item : list) {
-                    Element itemElement = document.createElement(singularName);
-                    parentContainer.appendChild(itemElement);
-                    // Iterate through mappings within the group to set child elements
-                    for (ExcelMappingReader.XmlMapping subMapping : groupMappings) {
-                        if (!subMapping.getXmlPath().startsWith(xmlPath)) continue;
-                        String subXmlPath = subMapping.getXmlPath();
-                        String relativePath = subXmlPath.substring(xmlPath.length());
-                        if (relativePath.startsWith("/")) {
-                            relativePath = relativePath.substring(1);
-                        }
-                        if (relativePath.contains("/")) {
-                            // Nested path; handle accordingly (could require recursive logic)
-                            // For simplicity, assume single-level nesting within the group
-                            continue;
-                        }
-                        String subApiFieldName = subMapping.getApiFieldName();
-                        String subXmlElementName = subMapping.getXmlElementName();
-                        String subApiDataType = subMapping.getApiDataType();
-                        String subXmlDataType = subMapping.getXmlDataType();
-
-                        Object fieldValue = getFieldValue(item, subApiFieldName);
-                        String convertedValue = DataTypeConverter.convert(fieldValue, subApiDataType, subXmlDataType);
-
-                        if (convertedValue != null && !convertedValue.isEmpty()) {
-                            Element element = document.createElement(subXmlElementName);
-                            element.appendChild(document.createTextNode(convertedValue));
-                            itemElement.appendChild(element);
-                        }
+    static void writeSteps(XmlSink sink, List<MappingPlan.Step> steps, Object source) throws Exception {
+        writeSteps(sink, steps, source, null);
+    }
+
+    /**
+     * Emits the elements described by the given plan steps, recording into the metrics if they are not null.
+     */
+    static void writeSteps(XmlSink sink, List<MappingPlan.Step> steps, Object source, ConversionMetrics metrics) throws Exception {
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.LeafStep) {
+                MappingPlan.LeafStep leaf = (MappingPlan.LeafStep) step;
+                Object fieldValue = metrics != null
+                        ? getFieldValue(source, leaf.getApiFieldName(), metrics)
+                        : getFieldValue(source, leaf.getApiFieldName());
+                if (metrics != null) {
+                    writeLeaf(sink, leaf.getXmlElementName(), fieldValue, leaf.getConverter(), leaf.getMapping(), leaf.getApiFieldName(), metrics);
+                } else if (fieldValue != null) {
+                    sink.leaf(leaf.getXmlElementName(), fieldValue, leaf.getConverter());
+                }
+            } else if (step instanceof MappingPlan.ContainerStep) {
+                MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                sink.startElement(container.getElementName());
+                writeSteps(sink, container.getSteps(), source, metrics);
+                sink.endElement();
+                if (metrics != null) {
+                    metrics.elementsEmitted++;
+                }
+            } else if (step instanceof MappingPlan.CollectionStep) {
+                MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                Object value = metrics != null
+                        ? getFieldValue(source, collection.getApiFieldName(), metrics)
+                        : getFieldValue(source, collection.getApiFieldName());
+                if (value == null) {
+                    if (metrics != null) {
+                        metrics.nullsSkipped++;
+                    }
+                    continue;
+                }
+                writeCollection(sink, collection, value, metrics);
+            }
+        }
+    }
+
+    /**
+     * Emits the container element of a collection and one item element per non-null entry.
+     *
+     * Entries are pulled one at a time, so with a streaming sink a lazy collection is never held in memory.
+     */
+    static void writeCollection(XmlSink sink, MappingPlan.CollectionStep collection, Object value, ConversionMetrics metrics) throws Exception {
+        MappingPlan.Node itemNode = collection.getItem();
+        try {
+            Iterator<?> items = iterate(value);
+            boolean tracked = metrics != null && metrics.report != null;
+            sink.startElement(collection.getContainerName());
+            for (int index = 0; items.hasNext(); index++) {
+                Object item = items.next();
+                if (item == null) {
+                    if (metrics != null) {
+                        metrics.nullsSkipped++;
+                    }
+                    continue;
+                }
+                if (tracked) {
+                    metrics.enterItem(collection.getApiFieldName(), index);
+                }
+                if (collection.isScalar()) {
+                    if (metrics != null) {
+                        writeLeaf(sink, itemNode.getElementName(), item, collection.getItemConverter(), collection.getMapping(), null, metrics);
+                    } else {
+                        sink.leaf(itemNode.getElementName(), item, collection.getItemConverter());
+                    }
+                } else if (item instanceof RenderedItem) {
+                    if (!(sink instanceof StreamingXmlWriter)) {
+                        throw new IllegalStateException("Rendered items can only be written to a StreamingXmlWriter, not to "
+                                + sink.getClass().getName());
+                    }
+                    ((RenderedItem) item).writeTo((StreamingXmlWriter) sink);
+                } else {
+                    sink.startElement(itemNode.getElementName());
+                    writeSteps(sink, itemNode.getSteps(), item, metrics);
+                    sink.endElement();
+                    if (metrics != null) {
+                        metrics.elementsEmitted++;
                     }
                 }
-            } else {
-                // Single object field
-                String convertedValue = DataTypeConverter.convert(currentObject, apiDataType, xmlDataType);
-                if (convertedValue != null && !convertedValue.isEmpty()) {
-                    Element element = document.createElement(xmlElementName);
-                    element.appendChild(document.createTextNode(convertedValue));
-                    rootElement.appendChild(element);
+                if (tracked) {
+                    metrics.exitItem();
                 }
             }
+            sink.endElement();
+            if (metrics != null) {
+                metrics.elementsEmitted++;
+            }
+        } finally {
+            closeCollection(value);
         }
     }
 
     /**
-     * Extracts the object from the API response based on the XML Path.
+     * Returns an iterator over a collection field: any Iterable, an Iterator or a Stream.
+     *
+     * @throws IllegalArgumentException if the value is none of these.
      */
-    private static Object extractObject(Object apiResponse, String xmlPath) throws Exception {
-        String[] pathSegments = xmlPath.split("/");
-        Object currentObject = apiResponse;
-        for (String segment : pathSegments) {
-            if (segment.equals(getLastPathSegment(xmlPath))) continue; // Skip the last segment for field extraction
-            currentObject = getFieldValue(currentObject, segment);
-            if (currentObject == null) break;
+    static Iterator<?> iterate(Object collection) {
+        if (collection instanceof Iterable) {
+            return ((Iterable<?>) collection).iterator();
+        } else if (collection instanceof Iterator) {
+            return (Iterator<?>) collection;
+        } else if (collection instanceof BaseStream) {
+            return ((BaseStream<?, ?>) collection).iterator();
         }
-        return currentObject;
+        throw new IllegalArgumentException("Unsupported collection type: " + collection.getClass().getName());
     }
 
     /**
-     * Retrieves the value of a field from an object using reflection.
+     * Closes a Stream once its entries have been written, releasing e.g. a database cursor behind it.
      */
-    private static Object getFieldValue(Object obj, String fieldName) throws Exception {
-        if (obj == null) return null;
-        Field field = getField(obj.getClass(), fieldName);
-        if (field == null) {
-            throw new NoSuchFieldException("Field '" + fieldName + "' not found in " + obj.getClass().getName());
+    static void closeCollection(Object collection) {
+        if (collection instanceof BaseStream) {
+            ((BaseStream<?, ?>) collection).close();
         }
-        field.setAccessible(true);
-        return field.get(obj);
     }
 
     /**
-     * Recursively searches for a field in a class and its superclasses.
+     * Converts and writes one leaf while timing the conversion and counting the outcome.
+     * A failed value is reported and replaced if the conversion is lenient, otherwise rethrown.
      */
-    private static Field getField(Class<?> clazz, String fieldName) {
-        if (clazz == null) return null;
+    private static void writeLeaf(XmlSink sink, String name, Object value, ValueConverter converter,
+                                  ExcelMappingReader.XmlMapping mapping, String fieldName, ConversionMetrics metrics) throws Exception {
+        if (value == null) {
+            metrics.nullsSkipped++;
+            return;
+        }
+        long start = metrics.timed ? System.nanoTime() : 0;
+        String convertedValue;
         try {
-            return clazz.getDeclaredField(fieldName);
-        } catch (NoSuchFieldException e) {
-            return getField(clazz.getSuperclass(), fieldName);
+            convertedValue = converter.convert(value);
+        } catch (IllegalArgumentException e) {
+            metrics.conversionFailed(mapping, value, e);
+            if (metrics.report == null) {
+                throw e;
+            }
+            convertedValue = metrics.report.conversionFailed(metrics.record, mapping, metrics.pathTo(fieldName), value, e);
+        } finally {
+            if (metrics.timed) {
+                metrics.conversionNanos += System.nanoTime() - start;
+            }
         }
+        if (convertedValue == null || convertedValue.isEmpty()) {
+            metrics.nullsSkipped++;
+            return;
+        }
+        sink.leaf(name, convertedValue);
+        metrics.elementsEmitted++;
     }
 
     /**
-     * Determines if a path represents a collection.
+     * Retrieves the value of a field, record component, getter or map entry through the cached accessor for its class.
      */
-    private static boolean isCollectionPath(String path) {
-        // Simple heuristic: if the last segment is plural, it's a collection
-        String lastSegment = getLastPathSegment(path);
-        return lastSegment.endsWith("s");
+    static Object getFieldValue(Object obj, String fieldName) throws Exception {
+        if (obj == null) return null;
+        return ValueAccessors.forProperty(obj.getClass(), fieldName).get(obj);
     }
 
     /**
-     * Converts plural to singular (simple heuristic).
-     * For more complex scenarios, consider using a library like Apache Commons Lang's WordUtils.
+     * Retrieves the value of a field and adds the time spent to the extraction timing.
      */
-    private static String getSingularForm(String plural) {
-        if (plural.endsWith("ies")) {
-            return plural.substring(0, plural.length() - 3) + "y";
-        } else if (plural.endsWith("s") && !plural.endsWith("ss")) {
-            return plural.substring(0, plural.length() - 1);
+    private static Object getFieldValue(Object obj, String fieldName, ConversionMetrics metrics) throws Exception {
+        if (!metrics.timed) {
+            return getFieldValue(obj, fieldName);
+        }
+        long start = System.nanoTime();
+        try {
+            return getFieldValue(obj, fieldName);
+        } finally {
+            metrics.extractionNanos += System.nanoTime() - start;
         }
-        return plural; // Return as-is if not identifiable
     }
 
     /**
-     * Creates or retrieves the parent container element based on the XML Path.
+     * Creates a DocumentBuilder for the calling thread.
      */
-    private static Element getOrCreateParentContainer(Document document, Element rootElement, String xmlPath) throws Exception {
-        String[] pathSegments = xmlPath.split("/");
-        Element parentContainer = rootElement;
-        for (String segment : pathSegments) {
-            NodeList nodeList = parentContainer.getElementsByTagName(segment);
-            if (nodeList.getLength() == 0) {
-                Element newElement = document.createElement(segment);
-                parentContainer.appendChild(newElement);
-                parentContainer = newElement;
-            } else {
-                parentContainer = (Element) nodeList.item(0);
-            }
+    private static DocumentBuilder newDocumentBuilder() {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder();
+        } catch (ParserConfigurationException e) {
+            throw new IllegalStateException("Unable to create DocumentBuilder", e);
         }
-        return parentContainer;
     }
 
     /**
-     * Transforms an XML Document to a formatted String.
+     * Creates a pretty-printing Transformer for the calling thread.
      */
-    private static String transformDocumentToString(Document document) throws TransformerException {
-        TransformerFactory tf = TransformerFactory.newInstance();
-        Transformer transformer = tf.newTransformer();
+    private static Transformer newTransformer() {
+        try {
+            Transformer transformer = TransformerFactory.newInstance().newTransformer();
 
-        // Pretty print the XML
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
+            // Pretty print the XML
+            transformer.setOutputProperty(OutputKeys.INDENT, "yes");
+            transformer.setOutputProperty("{http://xml.apache.org/xslt}indent-amount", "4");
 
-        // Set XML declaration
-        transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
-        transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            // Set XML declaration
+            transformer.setOutputProperty(OutputKeys.OMIT_XML_DECLARATION, "no");
+            transformer.setOutputProperty(OutputKeys.ENCODING, "UTF-8");
+            return transformer;
+        } catch (TransformerConfigurationException e) {
+            throw new IllegalStateException("Unable to create Transformer", e);
+        }
+    }
 
+    /**
+     * Transforms an XML Document to a formatted String.
+     */
+    private static String transformDocumentToString(Document document) throws TransformerException {
+        Transformer transformer = TRANSFORMER.get();
         StringWriter writer = new StringWriter();
         transformer.transform(new DOMSource(document), new StreamResult(writer));
 
         return writer.getBuffer().toString();
     }
+
+    /**
+     * A collection item that writes its own element as ready XML to a {@link StreamingXmlWriter}, e.g. a
+     * fragment rendered earlier. A fragment must have been produced for the depth the item is written at.
+     */
+    abstract static class RenderedItem {
+
+        /**
+         * Writes the item's element at the writer's current depth.
+         */
+        abstract void writeTo(StreamingXmlWriter writer) throws Exception;
+    }
+
+    /**
+     * Sink that appends the emitted elements to a DOM Document.
+     */
+    private static final class DomSink implements XmlSink {
+        private final Document document;
+        private Node current;
+
+        private DomSink(Document document) {
+            this.document = document;
+            this.current = document;
+        }
+
+        @Override
+        public void startElement(String name) {
+            Element element = document.createElement(name);
+            current.appendChild(element);
+            current = element;
+        }
+
+        @Override
+        public void text(String value) {
+            current.appendChild(document.createTextNode(value));
+        }
+
+        @Override
+        public void endElement() {
+            current = current.getParentNode();
+        }
+    }
 }
@@ -0,0 +1,195 @@
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Converts many API responses against the same mapping plan while reusing per-thread resources.
+ *
+ * Each thread keeps one output buffer and one UTF-8 encoder for its whole lifetime, so a batch of
+ * millions of small responses does no factory lookups and no per-response writer setup. An engine
+ * is thread-safe and is meant to be shared.
+ *
+ * For large documents, {@link #convertToBuffer(MappingPlan, Object)} and
+ * {@link #convert(MappingPlan, Object, WritableByteChannel)} encode straight into buffers from a
+ * {@link ByteBufferPool} and skip the final copy into a byte array.
+ */
+public class XmlConversionEngine {
+
+    private final boolean indent;
+    private final ConversionListener listener;
+    private final ByteBufferPool bufferPool;
+    // Size of the last buffered document, used to size the next buffer so it rarely has to grow
+    private volatile int expectedSize;
+    private final ThreadLocal<ReusableOutput> outputs = ThreadLocal.withInitial(ReusableOutput::new);
+
+    /**
+     * Creates an engine that pretty prints its output.
+     */
+    public XmlConversionEngine() {
+        this(true);
+    }
+
+    /**
+     * Creates an engine.
+     *
+     * @param indent Whether to pretty print the output.
+     */
+    public XmlConversionEngine(boolean indent) {
+        this(indent, ConversionListener.NOOP);
+    }
+
+    /**
+     * Creates an engine that reports the metrics of every conversion.
+     *
+     * @param indent   Whether to pretty print the output.
+     * @param listener Receives the metrics of each conversion; must be thread-safe if the engine is shared.
+     */
+    public XmlConversionEngine(boolean indent, ConversionListener listener) {
+        this(indent, listener, new ByteBufferPool());
+    }
+
+    /**
+     * Creates an engine that encodes into buffers from the given pool.
+     *
+     * @param indent     Whether to pretty print the output.
+     * @param listener   Receives the metrics of each conversion; must be thread-safe if the engine is shared.
+     * @param bufferPool The pool used by the buffer and channel outputs, e.g. one handing out direct buffers.
+     */
+    public XmlConversionEngine(boolean indent, ConversionListener listener, ByteBufferPool bufferPool) {
+        this.indent = indent;
+        this.listener = listener;
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Converts a single API response to UTF-8 encoded XML.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @return The UTF-8 encoded document.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public byte[] convert(MappingPlan plan, Object apiResponse) throws Exception {
+        return convert(plan, apiResponse, null, -1);
+    }
+
+    private byte[] convert(MappingPlan plan, Object apiResponse, ConversionReport report, long record) throws Exception {
+        ReusableOutput output = outputs.get();
+        output.reset();
+        try {
+            XmlBuilder.writeXml(plan, apiResponse, output.writer, indent, listener, report, record);
+            return output.toByteArray();
+        } finally {
+            output.release();
+        }
+    }
+
+    /**
+     * Converts a single API response to UTF-8 encoded XML held in a pooled buffer.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @return The document; the caller must close it to return the buffer to the pool.
+     * @throws Exception if an error occurs during conversion.
+     */
+    public PooledXmlBuffer convertToBuffer(MappingPlan plan, Object apiResponse) throws Exception {
+        Utf8BufferWriter writer = new Utf8BufferWriter(bufferPool, expectedSize);
+        try {
+            XmlBuilder.writeXml(plan, apiResponse, writer, indent, listener);
+            PooledXmlBuffer buffer = writer.toPooledBuffer();
+            expectedSize = buffer.size();
+            return buffer;
+        } catch (Exception e) {
+            writer.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Converts a single API response and writes it as UTF-8 encoded XML to a channel.
+     *
+     * The document is encoded into one pooled buffer that is drained whenever it fills up, so the
+     * memory used does not depend on the size of the document.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param apiResponse The API response object.
+     * @param channel     The destination; it is not closed.
+     * @throws Exception if an error occurs during conversion; part of the document may have been written.
+     */
+    public void convert(MappingPlan plan, Object apiResponse, WritableByteChannel channel) throws Exception {
+        try (Utf8BufferWriter writer = new Utf8BufferWriter(bufferPool, channel)) {
+            XmlBuilder.writeXml(plan, apiResponse, writer, indent, listener);
+        }
+    }
+
+    /**
+     * Converts a batch of API responses, handing each encoded document to the consumer in order.
+     *
+     * @param plan      The compiled mapping plan.
+     * @param responses The API response objects.
+     * @param consumer  Receives the UTF-8 encoded document for each response.
+     * @throws Exception if an error occurs during conversion; earlier documents have already been consumed.
+     */
+    public void convertAll(MappingPlan plan, Iterable<?> responses, Consumer<byte[]> consumer) throws Exception {
+        for (Object response : responses) {
+            consumer.accept(convert(plan, response));
+        }
+    }
+
+    /**
+     * Converts a batch of API responses leniently, so one malformed record does not abort the batch.
+     *
+     * Values that fail to convert are recorded in the report and their elements omitted or given the
+     * report's default. A response that cannot be converted at all is recorded and skipped; the report
+     * entries carry the position of the response in the batch.
+     *
+     * @param plan      The compiled mapping plan.
+     * @param responses The API response objects.
+     * @param consumer  Receives the UTF-8 encoded document for each response that could be converted.
+     * @param report    Receives the errors.
+     * @throws Exception if the consumer fails.
+     */
+    public void convertAll(MappingPlan plan, Iterable<?> responses, Consumer<byte[]> consumer, ConversionReport report) throws Exception {
+        long record = 0;
+        for (Object response : responses) {
+            byte[] document;
+            try {
+                document = convert(plan, response, report, record);
+            } catch (Exception e) {
+                report.recordFailed(record, e);
+                document = null;
+            }
+            record++;
+            if (document != null) {
+                consumer.accept(document);
+            }
+        }
+    }
+
+    /**
+     * Per-thread byte buffer with a long-lived UTF-8 writer on top.
+     */
+    private static final class ReusableOutput extends ByteArrayOutputStream {
+        // Buffers that grew beyond this are dropped after use so one huge response does not pin memory
+        private static final int MAX_RETAINED_CAPACITY = 1 << 20;
+        private static final int INITIAL_CAPACITY = 8192;
+
+        private final Writer writer = new OutputStreamWriter(this, StandardCharsets.UTF_8);
+
+        private ReusableOutput() {
+            super(INITIAL_CAPACITY);
+        }
+
+        private void release() throws IOException {
+            writer.flush();
+            reset();
+            if (buf.length > MAX_RETAINED_CAPACITY) {
+                buf = new byte[INITIAL_CAPACITY];
+            }
+        }
+    }
+}
@@ -0,0 +1,346 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reactive conversion stage: a {@link Flow.Processor} turning a stream of payloads into UTF-8 encoded
+ * XML documents, with bounded buffering and backpressure to the source.
+ *
+ * Each payload passes through an extraction step, e.g. binding JSON to API objects, and is then
+ * converted and serialized by an {@link XmlConversionEngine} on the given executor, with at most
+ * {@code parallelism} payloads in work. No more than {@code bufferSize} payloads are requested from
+ * the source ahead of what the subscriber has taken, so a burst or a slow subscriber never queues up
+ * unbounded work. Documents are emitted in arrival order, or as soon as they are done if order does
+ * not matter, which keeps one slow payload from holding back the others.
+ *
+ * Any executor can run the conversions. A fixed pool keeps the engine's per-thread buffers warm; on
+ * Java 21 and later {@code Executors.newVirtualThreadPerTaskExecutor()} suits extraction that blocks on
+ * I/O, at the cost of a fresh buffer per payload. The executor is not shut down by the pipeline.
+ *
+ * The first failure, of the source or of a payload, cancels the source and is passed to the
+ * subscriber; documents not emitted yet are dropped. A subscriber that throws from a signal terminates
+ * the pipeline and cancels the source; the exception propagates to the thread that signalled. A
+ * pipeline serves one subscriber.
+ *
+ * @param <T> The type of payloads received from the source.
+ */
+public final class XmlConversionPipeline<T> implements Flow.Processor<T, byte[]> {
+
+    /**
+     * Binds a payload to the API object the mapping plan converts.
+     *
+     * @param <T> The type of payloads.
+     */
+    public interface Extractor<T> {
+        Object extract(T payload) throws Exception;
+    }
+
+    private final MappingPlan plan;
+    private final XmlConversionEngine engine;
+    private final Extractor<? super T> extractor;
+    private final Executor executor;
+    private final int parallelism;
+    private final int bufferSize;
+    private final boolean ordered;
+
+    // All fields below are guarded by this
+    private Flow.Subscription upstream;
+    private Flow.Subscriber<? super byte[]> downstream;
+    private boolean subscribed; // onSubscribe has returned, so downstream may be signalled
+    private final ArrayDeque<Slot<T>> waiting = new ArrayDeque<>(); // received, not yet started
+    private final ArrayDeque<Slot<T>> results = new ArrayDeque<>(); // in arrival or completion order
+    private int running;
+    private long demand;
+    private boolean upstreamDone;
+    private Throwable failure;
+    private boolean terminated;
+    private boolean draining;
+
+    /**
+     * Creates a pipeline converting API objects as they are, in order, with twice as many buffered as running.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param engine      The engine converting and serializing the objects.
+     * @param executor    Runs the conversions.
+     * @param parallelism The number of conversions running at once.
+     */
+    public XmlConversionPipeline(MappingPlan plan, XmlConversionEngine engine, Executor executor, int parallelism) {
+        this(plan, engine, payload -> payload, executor, parallelism, 2 * parallelism, true);
+    }
+
+    /**
+     * Creates a pipeline.
+     *
+     * @param plan        The compiled mapping plan.
+     * @param engine      The engine converting and serializing the objects.
+     * @param extractor   Binds each payload to its API object; called on the executor.
+     * @param executor    Runs the extraction and conversion of each payload.
+     * @param parallelism The number of payloads in work at once.
+     * @param bufferSize  The number of payloads requested from the source ahead of the subscriber, at least the parallelism.
+     * @param ordered     Whether documents are emitted in the order of their payloads.
+     */
+    public XmlConversionPipeline(MappingPlan plan, XmlConversionEngine engine, Extractor<? super T> extractor,
+                                 Executor executor, int parallelism, int bufferSize, boolean ordered) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive.");
+        }
+        if (bufferSize < parallelism) {
+            throw new IllegalArgumentException("bufferSize must be at least the parallelism.");
+        }
+        this.plan = plan;
+        this.engine = engine;
+        this.extractor = extractor;
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.bufferSize = bufferSize;
+        this.ordered = ordered;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super byte[]> subscriber) {
+        Flow.Subscriber<? super byte[]> rejected = subscriber;
+        synchronized (this) {
+            if (downstream == null) {
+                downstream = subscriber;
+                rejected = null;
+            }
+        }
+        if (rejected != null) {
+            rejected.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                }
+
+                @Override
+                public void cancel() {
+                }
+            });
+            rejected.onError(new IllegalStateException("The pipeline already has a subscriber."));
+            return;
+        }
+        subscriber.onSubscribe(new Flow.Subscription() {
+            @Override
+            public void request(long n) {
+                synchronized (XmlConversionPipeline.this) {
+                    if (n <= 0) {
+                        fail(new IllegalArgumentException("Requested " + n + " documents; demand must be positive."));
+                    } else {
+                        demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                    }
+                }
+                drain();
+            }
+
+            @Override
+            public void cancel() {
+                Flow.Subscription source;
+                synchronized (XmlConversionPipeline.this) {
+                    terminate();
+                    source = upstream;
+                }
+                if (source != null) {
+                    source.cancel();
+                }
+            }
+        });
+        synchronized (this) {
+            subscribed = true;
+        }
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        boolean accepted;
+        synchronized (this) {
+            accepted = upstream == null && !terminated;
+            if (accepted) {
+                upstream = subscription;
+            }
+        }
+        if (accepted) {
+            subscription.request(bufferSize);
+        } else {
+            subscription.cancel();
+        }
+    }
+
+    @Override
+    public void onNext(T payload) {
+        synchronized (this) {
+            if (terminated) return;
+            Slot<T> slot = new Slot<>(payload);
+            waiting.add(slot);
+            if (ordered) {
+                results.add(slot);
+            }
+        }
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        synchronized (this) {
+            fail(throwable);
+        }
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        synchronized (this) {
+            upstreamDone = true;
+        }
+        drain();
+    }
+
+    /**
+     * Extracts and converts one payload on the executor.
+     */
+    private void process(Slot<T> slot) {
+        Throwable error = null;
+        try {
+            slot.document = engine.convert(plan, extractor.extract(slot.payload));
+        } catch (Throwable e) {
+            error = e;
+        }
+        synchronized (this) {
+            running--;
+            slot.payload = null;
+            slot.done = true;
+            if (error != null) {
+                fail(error);
+            } else if (!ordered && !terminated) {
+                results.add(slot);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * Starts waiting payloads and passes finished documents, completion or failure to the subscriber.
+     *
+     * Only one thread drains at a time, so the subscriber is signalled serially; others leave their
+     * changes for it to pick up.
+     */
+    private void drain() {
+        synchronized (this) {
+            if (draining) return;
+            draining = true;
+        }
+        List<Slot<T>> starting = new ArrayList<>();
+        while (true) {
+            Flow.Subscriber<? super byte[]> subscriber;
+            Flow.Subscription source;
+            byte[] document = null;
+            Throwable error = null;
+            boolean complete = false;
+            synchronized (this) {
+                // Nothing may be signalled before onSubscribe returns (Reactive Streams 1.9)
+                subscriber = subscribed ? downstream : null;
+                source = upstream;
+                if (!terminated) {
+                    while (running < parallelism && !waiting.isEmpty()) {
+                        starting.add(waiting.poll());
+                        running++;
+                    }
+                }
+                if (terminated || subscriber == null) {
+                    // Nothing to signal
+                } else if (failure != null) {
+                    error = failure;
+                    terminate();
+                } else if (demand > 0 && !results.isEmpty() && results.peek().done) {
+                    document = results.poll().document;
+                    demand--;
+                } else if (upstreamDone && running == 0 && waiting.isEmpty() && results.isEmpty()) {
+                    complete = true;
+                    terminate();
+                }
+                if (starting.isEmpty() && document == null && error == null && !complete) {
+                    draining = false;
+                    return;
+                }
+            }
+            try {
+                for (Slot<T> slot : starting) {
+                    start(slot);
+                }
+                starting.clear();
+                if (error != null) {
+                    if (source != null) {
+                        source.cancel();
+                    }
+                    subscriber.onError(error);
+                } else if (document != null) {
+                    subscriber.onNext(document);
+                    if (source != null) {
+                        source.request(1);
+                    }
+                } else if (complete) {
+                    subscriber.onComplete();
+                }
+            } catch (Throwable e) {
+                // A subscriber or source that throws breaks the Flow contract; stop the pipeline rather than
+                // leave it draining forever, and let the caller see the error
+                synchronized (this) {
+                    terminate();
+                    draining = false;
+                }
+                if (source != null && error == null) {
+                    try {
+                        source.cancel();
+                    } catch (Throwable suppressed) {
+                        e.addSuppressed(suppressed);
+                    }
+                }
+                throw e;
+            }
+        }
+    }
+
+    private void start(Slot<T> slot) {
+        try {
+            executor.execute(() -> process(slot));
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                running--;
+                fail(e);
+            }
+        }
+    }
+
+    /**
+     * Records the first failure; it is signalled by the next drain.
+     */
+    private void fail(Throwable throwable) {
+        if (failure == null && !terminated) {
+            failure = throwable;
+        }
+    }
+
+    /**
+     * Stops all further signals and drops the queued work.
+     */
+    private void terminate() {
+        terminated = true;
+        waiting.clear();
+        results.clear();
+    }
+
+    /**
+     * One payload and, once converted, its document.
+     */
+    private static final class Slot<T> {
+        private T payload;
+        private byte[] document;
+        private boolean done;
+
+        private Slot(T payload) {
+            this.payload = payload;
+        }
+    }
+}
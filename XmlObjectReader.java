@@ -0,0 +1,584 @@
+import java.io.InputStream;
+import java.io.Reader;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.RecordComponent;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Binds XML documents back into API objects, driven by the same mapping plan that writes them.
+ *
+ * This is the reverse of {@link XmlBuilder#writeXml(MappingPlan, Object, java.io.Writer, boolean)}:
+ * elements are matched against the plan by name, leaf text is parsed according to the mapping's XML
+ * data type into the Java type of the API property, and collection items are created and gathered into
+ * the collection property. Properties are bound in the order {@link ValueAccessors} reads them: map
+ * entries, record components (passed to the canonical constructor once the element is complete),
+ * writable fields, then public {@code setX} methods. Map entries hold the value the XML data type
+ * describes, and the items of a map are maps as well. Properties read through a
+ * {@link ValueAccessorProvider} are bound by these rules too, as providers only read.
+ * Constructors, setters and parsers are resolved once when the reader is created, so a property that
+ * cannot be written fails then rather than midway through a document. Documents are read with StAX, so
+ * no DOM is built. Elements the plan does not know are skipped.
+ *
+ * Binding a whole document still holds the resulting object graph in memory. For files of hundreds of
+ * megabytes, {@link #read(InputStream, String, Consumer)} hands each item of one collection to a callback
+ * as soon as it is complete instead of adding it to its parent, so memory stays constant however many
+ * items the document holds.
+ * A reader is immutable and thread-safe.
+ *
+ * @param <T> The class bound to the root element.
+ */
+public final class XmlObjectReader<T> {
+
+    // Configured once; DTDs and external entities are refused so untrusted documents cannot reach out
+    private static final XMLInputFactory INPUT_FACTORY = createInputFactory();
+
+    private static final MethodType SETTER_TYPE = MethodType.methodType(void.class, Object.class, Object.class);
+
+    private final MappingPlan plan;
+    private final Class<T> rootClass;
+    private final ObjectBinding root;
+    private final Set<String> collectionPaths = new LinkedHashSet<>();
+
+    /**
+     * Creates a reader, resolving every class, constructor, field and parser the plan needs.
+     *
+     * @param plan      The compiled mapping plan.
+     * @param rootClass The class bound to the root element.
+     * @throws IllegalArgumentException if a mapped class or property cannot be bound.
+     */
+    public XmlObjectReader(MappingPlan plan, Class<T> rootClass) {
+        this.plan = plan;
+        this.rootClass = rootClass;
+        this.root = new ObjectBinding(rootClass, plan.getRoot(), this);
+    }
+
+    /**
+     * Binds a whole document.
+     *
+     * @param in The XML document; it is not closed.
+     * @return The object bound to the root element.
+     * @throws Exception if the document cannot be read or bound.
+     */
+    public T read(InputStream in) throws Exception {
+        return bind(INPUT_FACTORY.createXMLStreamReader(in), null, null);
+    }
+
+    /**
+     * Binds a whole document.
+     *
+     * @param in The XML document; it is not closed.
+     * @return The object bound to the root element.
+     * @throws Exception if the document cannot be read or bound.
+     */
+    public T read(Reader in) throws Exception {
+        return bind(INPUT_FACTORY.createXMLStreamReader(in), null, null);
+    }
+
+    /**
+     * Binds a document, handing the items of one collection to a callback instead of keeping them.
+     * Each item is passed fully bound, including its own nested collections, and is not referenced
+     * afterwards; the collection field of its parent is left unset.
+     *
+     * @param in             The XML document; it is not closed.
+     * @param collectionPath The XML Path of the collection mapping, e.g. {@code Company/Branches/Teams/Members}.
+     * @param itemConsumer   Receives each item in document order.
+     * @return The object bound to the root element, without the streamed items.
+     * @throws Exception if the document cannot be read or bound, or the consumer fails.
+     */
+    public T read(InputStream in, String collectionPath, Consumer<Object> itemConsumer) throws Exception {
+        String path = MappingPlan.normalizePath(collectionPath);
+        if (!collectionPaths.contains(path)) {
+            throw new IllegalArgumentException("No collection mapped at XML Path: " + collectionPath);
+        }
+        return bind(INPUT_FACTORY.createXMLStreamReader(in), path, itemConsumer);
+    }
+
+    /**
+     * Gets the plan this reader binds with.
+     */
+    public MappingPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * Gets the class bound to the root element.
+     */
+    public Class<T> getRootClass() {
+        return rootClass;
+    }
+
+    private T bind(XMLStreamReader reader, String streamedPath, Consumer<Object> itemConsumer) throws Exception {
+        try {
+            while (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                // Skip the prolog: declaration, comments and processing instructions
+            }
+            if (!reader.getLocalName().equals(plan.getRootElementName())) {
+                throw new IllegalArgumentException("Expected root element <" + plan.getRootElementName()
+                        + "> but found <" + reader.getLocalName() + ">");
+            }
+            return rootClass.cast(readObject(reader, root, streamedPath, itemConsumer));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Creates the object for the current element and binds its content; returns after its end tag.
+     */
+    private static Object readObject(XMLStreamReader reader, ObjectBinding binding, String streamedPath, Consumer<Object> itemConsumer) throws Exception {
+        Object target = binding.newInstance();
+        readChildren(reader, binding.children, target, streamedPath, itemConsumer);
+        return binding.complete(target);
+    }
+
+    /**
+     * Binds the child elements of the current element to the target; returns after its end tag.
+     */
+    private static void readChildren(XMLStreamReader reader, Map<String, Object> children, Object target, String streamedPath, Consumer<Object> itemConsumer) throws Exception {
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) return;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+
+            Object child = children.get(reader.getLocalName());
+            if (child instanceof LeafBinding) {
+                LeafBinding leaf = (LeafBinding) child;
+                leaf.bind(target, reader.getElementText(), reader);
+            } else if (child instanceof ContainerBinding) {
+                readChildren(reader, ((ContainerBinding) child).children, target, streamedPath, itemConsumer);
+            } else if (child instanceof CollectionBinding) {
+                readCollection(reader, (CollectionBinding) child, target, streamedPath, itemConsumer);
+            } else {
+                skipElement(reader);
+            }
+        }
+    }
+
+    /**
+     * Binds the items of a collection container element; returns after its end tag.
+     */
+    private static void readCollection(XMLStreamReader reader, CollectionBinding binding, Object target, String streamedPath, Consumer<Object> itemConsumer) throws Exception {
+        boolean streamed = itemConsumer != null && binding.path.equals(streamedPath);
+        List<Object> items = streamed ? null : new ArrayList<>();
+        while (true) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT) break;
+            if (event != XMLStreamConstants.START_ELEMENT) continue;
+            if (!reader.getLocalName().equals(binding.itemName)) {
+                skipElement(reader);
+                continue;
+            }
+
+            Object item;
+            if (binding.item != null) {
+                item = readObject(reader, binding.item, streamedPath, itemConsumer);
+            } else {
+                item = binding.parse(reader.getElementText(), reader);
+            }
+            if (item == null) continue;
+            if (streamed) {
+                itemConsumer.accept(item);
+            } else {
+                items.add(item);
+            }
+        }
+        if (!streamed) {
+            binding.property.set(target, binding.adapt(items));
+        }
+    }
+
+    /**
+     * Skips the current element and everything inside it; returns after its end tag.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for (int depth = 1; depth > 0; ) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
+    private static XMLInputFactory createInputFactory() {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, false);
+        return factory;
+    }
+
+    /**
+     * Binds the steps of a plan node or container, keyed by child element name.
+     */
+    private static Map<String, Object> bindSteps(Class<?> type, List<MappingPlan.Step> steps, XmlObjectReader<?> owner) {
+        Map<String, Object> children = new HashMap<>();
+        for (MappingPlan.Step step : steps) {
+            if (step instanceof MappingPlan.LeafStep) {
+                MappingPlan.LeafStep leaf = (MappingPlan.LeafStep) step;
+                children.put(leaf.getXmlElementName(), new LeafBinding(type, leaf));
+            } else if (step instanceof MappingPlan.ContainerStep) {
+                MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                children.put(container.getElementName(), new ContainerBinding(type, container, owner));
+            } else if (step instanceof MappingPlan.CollectionStep) {
+                MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                children.put(collection.getContainerName(), new CollectionBinding(type, collection, owner));
+            }
+        }
+        return children;
+    }
+
+    /**
+     * Resolves how a mapped property is written, failing early if the class cannot take it.
+     */
+    private static Property property(Class<?> type, String name) {
+        if (Map.class.isAssignableFrom(type)) {
+            return new Property(null, Object.class, (target, value) -> putEntry(target, name, value));
+        }
+        if (type.isRecord()) {
+            RecordComponent[] components = type.getRecordComponents();
+            for (int i = 0; i < components.length; i++) {
+                if (components[i].getName().equals(name)) {
+                    int index = i;
+                    return new Property(components[i].getType(), components[i].getGenericType(),
+                            (target, value) -> ((Object[]) target)[index] = value);
+                }
+            }
+            throw new IllegalArgumentException("Record " + type.getName() + " has no component '" + name + "'");
+        }
+        FieldAccessor field = FieldAccessor.forField(type, name);
+        if (field.isPresent() && field.isWritable()) {
+            return new Property(field.getType(), field.getGenericType(), field::set);
+        }
+        Method setter = findSetter(type, name, field.isPresent() ? field.getType() : null);
+        if (setter != null) {
+            MethodHandle handle;
+            try {
+                handle = unreflect(setter).asType(SETTER_TYPE);
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException("Setter " + setter.getName() + " of " + type.getName() + " is not accessible", e);
+            }
+            return new Property(setter.getParameterTypes()[0], setter.getGenericParameterTypes()[0], (target, value) -> {
+                try {
+                    handle.invokeExact(target, value);
+                } catch (Exception | Error e) {
+                    throw e;
+                } catch (Throwable t) {
+                    throw new IllegalStateException("Error calling " + setter.getName() + " of " + type.getName(), t);
+                }
+            });
+        }
+        if (field.isPresent()) {
+            throw new IllegalArgumentException("Field '" + name + "' of " + type.getName() + " is not writable and has no setter");
+        }
+        throw new IllegalArgumentException("Field '" + name + "' not found in " + type.getName());
+    }
+
+    /**
+     * Finds a public, non-static {@code setX} method taking one argument, preferring the one that takes
+     * the field's type if the name is overloaded.
+     */
+    private static Method findSetter(Class<?> type, String name, Class<?> fieldType) {
+        if (name.isEmpty()) return null;
+        String methodName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        Method found = null;
+        int candidates = 0;
+        for (Method method : type.getMethods()) {
+            if (!method.getName().equals(methodName) || method.getParameterCount() != 1 || Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            if (method.getParameterTypes()[0] == fieldType) {
+                return method;
+            }
+            found = method;
+            candidates++;
+        }
+        if (candidates > 1) {
+            throw new IllegalArgumentException("Setter " + methodName + " of " + type.getName() + " is overloaded");
+        }
+        return found;
+    }
+
+    private static MethodHandle unreflect(Method method) throws IllegalAccessException {
+        try {
+            return MethodHandles.privateLookupIn(method.getDeclaringClass(), MethodHandles.lookup()).unreflect(method);
+        } catch (IllegalAccessException e) {
+            // Classes in modules that are not open to us: their exported public API
+            return MethodHandles.publicLookup().unreflect(method);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void putEntry(Object target, String key, Object value) {
+        ((Map<String, Object>) target).put(key, value);
+    }
+
+    /**
+     * Returns the parser for a leaf of the given property type; an untyped map entry gets the value the
+     * XML data type describes, or the text itself.
+     */
+    private static Function<String, Object> parser(String xmlDataType, Class<?> type) {
+        if (type != null) {
+            return DataTypeConverter.parserFor(xmlDataType, type);
+        }
+        Function<String, Object> parser = DataTypeConverter.validatorFor(xmlDataType);
+        return parser != null ? parser : text -> text;
+    }
+
+    /**
+     * Reports a value that cannot be parsed together with its position in the document.
+     */
+    private static IllegalArgumentException parseError(IllegalArgumentException e, XMLStreamReader reader) {
+        return new IllegalArgumentException(e.getMessage() + " (line " + reader.getLocation().getLineNumber() + ")", e);
+    }
+
+    /**
+     * An element bound to a new object: the root element or a collection item.
+     */
+    private static final class ObjectBinding {
+        private final Class<?> type;
+        private final MethodHandle constructor; // no-arg, or the canonical constructor of a record taking an Object[]
+        private final Object[] defaults; // initial component values of a record, null otherwise
+        private final Map<String, Object> children;
+
+        private ObjectBinding(Class<?> type, MappingPlan.Node node, XmlObjectReader<?> owner) {
+            this.type = type;
+            Class<?> instanceType = type.isInterface() && type.isAssignableFrom(LinkedHashMap.class) ? LinkedHashMap.class : type;
+            try {
+                MethodHandles.Lookup lookup;
+                try {
+                    lookup = MethodHandles.privateLookupIn(instanceType, MethodHandles.lookup());
+                } catch (IllegalAccessException e) {
+                    // Classes in modules that are not open to us, e.g. the JDK's maps: their public constructors
+                    lookup = MethodHandles.publicLookup();
+                }
+                if (type.isRecord()) {
+                    RecordComponent[] components = type.getRecordComponents();
+                    Class<?>[] parameterTypes = new Class<?>[components.length];
+                    this.defaults = new Object[components.length];
+                    for (int i = 0; i < components.length; i++) {
+                        parameterTypes[i] = components[i].getType();
+                        // Absent elements leave primitives at their default, like an unset field
+                        defaults[i] = parameterTypes[i].isPrimitive() ? MethodHandles.zero(parameterTypes[i]).invoke() : null;
+                    }
+                    this.constructor = lookup.findConstructor(type, MethodType.methodType(void.class, parameterTypes))
+                            .asSpreader(Object[].class, components.length)
+                            .asType(MethodType.methodType(Object.class, Object[].class));
+                } else {
+                    this.defaults = null;
+                    this.constructor = lookup.findConstructor(instanceType, MethodType.methodType(void.class))
+                            .asType(MethodType.methodType(Object.class));
+                }
+            } catch (NoSuchMethodException | IllegalAccessException e) {
+                throw new IllegalArgumentException("Class " + type.getName() + " has no accessible "
+                        + (type.isRecord() ? "canonical" : "no-arg") + " constructor", e);
+            } catch (Throwable t) {
+                throw new IllegalStateException("Error resolving the constructor of " + type.getName(), t);
+            }
+            this.children = bindSteps(type, node.getSteps(), owner);
+        }
+
+        /**
+         * Creates the object, or for a record the array its component values are gathered in.
+         */
+        private Object newInstance() {
+            if (defaults != null) {
+                return defaults.clone();
+            }
+            try {
+                return (Object) constructor.invokeExact();
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Error creating " + type.getName(), t);
+            }
+        }
+
+        /**
+         * Returns the object once its element is read, constructing a record from its gathered components.
+         */
+        private Object complete(Object target) {
+            if (defaults == null) {
+                return target;
+            }
+            try {
+                return (Object) constructor.invokeExact((Object[]) target);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable t) {
+                throw new IllegalStateException("Error creating " + type.getName(), t);
+            }
+        }
+    }
+
+    /**
+     * A static wrapper element around further fields of the same object.
+     */
+    private static final class ContainerBinding {
+        private final Map<String, Object> children;
+
+        private ContainerBinding(Class<?> type, MappingPlan.ContainerStep container, XmlObjectReader<?> owner) {
+            this.children = bindSteps(type, container.getSteps(), owner);
+        }
+    }
+
+    /**
+     * An element whose text is parsed into a field.
+     */
+    private static final class LeafBinding {
+        private final Property property;
+        private final boolean text;
+        private final Function<String, Object> parser;
+
+        private LeafBinding(Class<?> type, MappingPlan.LeafStep leaf) {
+            String xmlDataType = leaf.getMapping().getXmlDataType();
+            this.property = property(type, leaf.getApiFieldName());
+            this.text = property.type == null ? DataTypeConverter.validatorFor(xmlDataType) == null : property.type == String.class;
+            this.parser = parser(xmlDataType, property.type);
+        }
+
+        private void bind(Object target, String value, XMLStreamReader reader) throws Exception {
+            // Empty elements only carry a value for text properties
+            if (value.isEmpty() && !text) return;
+            try {
+                property.set(target, parser.apply(value));
+            } catch (IllegalArgumentException e) {
+                throw parseError(e, reader);
+            }
+        }
+    }
+
+    /**
+     * A container element whose items are gathered into a collection field.
+     */
+    private static final class CollectionBinding {
+        private final Property property;
+        private final String path;
+        private final String itemName;
+        private final ObjectBinding item; // null for simple values
+        private final Function<String, Object> parser;
+        private final boolean text;
+        private final Class<?> fieldType;
+
+        private CollectionBinding(Class<?> type, MappingPlan.CollectionStep collection, XmlObjectReader<?> owner) {
+            this.property = property(type, collection.getApiFieldName());
+            this.path = MappingPlan.normalizePath(collection.getMapping().getXmlPath());
+            this.itemName = collection.getItem().getElementName();
+            this.fieldType = property.type != null ? property.type : List.class;
+            if (!fieldType.isAssignableFrom(ArrayList.class) && !fieldType.isAssignableFrom(LinkedHashSet.class)
+                    && fieldType != Iterator.class && fieldType != Stream.class) {
+                throw new IllegalArgumentException("Unsupported collection type " + fieldType.getName()
+                        + " of field '" + collection.getApiFieldName() + "' in " + type.getName());
+            }
+
+            Class<?> itemType = itemType(type, collection);
+            if (collection.isScalar()) {
+                String xmlDataType = collection.getMapping().getXmlDataType();
+                this.item = null;
+                this.text = itemType == null ? DataTypeConverter.validatorFor(xmlDataType) == null : itemType == String.class;
+                this.parser = parser(xmlDataType, itemType);
+            } else {
+                this.item = new ObjectBinding(itemType, collection.getItem(), owner);
+                this.text = false;
+                this.parser = null;
+            }
+            owner.collectionPaths.add(path);
+        }
+
+        /**
+         * Gets the item class from the property's type argument, or from the API data type of the mapping.
+         * Items of an untyped map entry are untyped (null) if scalar and maps otherwise.
+         */
+        private Class<?> itemType(Class<?> type, MappingPlan.CollectionStep collection) {
+            if (property.type == null) {
+                return collection.isScalar() ? null : Map.class;
+            }
+            Type generic = property.genericType;
+            if (generic instanceof ParameterizedType) {
+                Type argument = ((ParameterizedType) generic).getActualTypeArguments()[0];
+                if (argument instanceof ParameterizedType) {
+                    argument = ((ParameterizedType) argument).getRawType();
+                }
+                if (argument instanceof Class) {
+                    return (Class<?>) argument;
+                }
+            }
+            String name = MappingPlan.getElementType(collection.getMapping().getApiDataType());
+            if (collection.isScalar()) {
+                return String.class;
+            }
+            try {
+                return Class.forName(name, false, type.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IllegalArgumentException("Item class " + name + " of field '" + collection.getApiFieldName()
+                        + "' in " + type.getName() + " not found", e);
+            }
+        }
+
+        private Object parse(String value, XMLStreamReader reader) {
+            if (value.isEmpty() && !text) return null;
+            try {
+                return parser.apply(value);
+            } catch (IllegalArgumentException e) {
+                throw parseError(e, reader);
+            }
+        }
+
+        /**
+         * Turns the gathered items into a value assignable to the field.
+         */
+        private Object adapt(List<Object> items) {
+            if (fieldType.isAssignableFrom(ArrayList.class)) return items;
+            if (fieldType.isAssignableFrom(LinkedHashSet.class)) return new LinkedHashSet<>(items);
+            if (fieldType == Iterator.class) return items.iterator();
+            return items.stream();
+        }
+    }
+
+    /**
+     * A mapped property of a bound class: its declared type, or null for an untyped map entry, and how it is set.
+     */
+    private static final class Property {
+        private final Class<?> type;
+        private final Type genericType;
+        private final Setter setter;
+
+        private Property(Class<?> type, Type genericType, Setter setter) {
+            this.type = type;
+            this.genericType = genericType;
+            this.setter = setter;
+        }
+
+        private void set(Object target, Object value) throws Exception {
+            setter.set(target, value);
+        }
+    }
+
+    /**
+     * Writes a property of a target: a field, a setter, a map entry or a record component slot.
+     */
+    private interface Setter {
+        void set(Object target, Object value) throws Exception;
+    }
+}
@@ -0,0 +1,61 @@
+import java.io.IOException;
+
+/**
+ * Receives the elements produced while walking a {@link MappingPlan}.
+ *
+ * Events arrive in document order, so an implementation can either build a tree or write the
+ * XML straight to its destination without keeping the document in memory.
+ */
+public interface XmlSink {
+
+    /**
+     * Opens a new element as a child of the current one.
+     *
+     * @param name The element name.
+     * @throws IOException if the element cannot be written.
+     */
+    void startElement(String name) throws IOException;
+
+    /**
+     * Adds character data to the current element.
+     *
+     * @param value The unescaped text.
+     * @throws IOException if the text cannot be written.
+     */
+    void text(String value) throws IOException;
+
+    /**
+     * Closes the current element.
+     *
+     * @throws IOException if the element cannot be written.
+     */
+    void endElement() throws IOException;
+
+    /**
+     * Writes a complete element holding only text.
+     *
+     * @param name  The element name.
+     * @param value The unescaped text.
+     * @throws IOException if the element cannot be written.
+     */
+    default void leaf(String name, String value) throws IOException {
+        startElement(name);
+        text(value);
+        endElement();
+    }
+
+    /**
+     * Converts a value and writes it as a complete element, skipping it if the converted text is empty.
+     *
+     * @param name      The element name.
+     * @param value     The unconverted value; never null.
+     * @param converter The converter resolved for the mapping.
+     * @throws IOException if the element cannot be written.
+     */
+    default void leaf(String name, Object value, ValueConverter converter) throws IOException {
+        String convertedValue = converter.convert(value);
+        if (convertedValue != null && !convertedValue.isEmpty()) {
+            leaf(name, convertedValue);
+        }
+    }
+}
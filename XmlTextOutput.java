@@ -0,0 +1,32 @@
+import java.io.IOException;
+
+/**
+ * Text output of an open element, used by {@link ValueConverter}s to write values without
+ * intermediate Strings.
+ */
+public interface XmlTextOutput {
+
+    /**
+     * Appends text, escaping markup characters.
+     *
+     * @param value The unescaped text.
+     * @throws IOException if the text cannot be written.
+     */
+    void appendText(String value) throws IOException;
+
+    /**
+     * Appends text that is known to contain no markup characters, such as {@code true} or {@code false}.
+     *
+     * @param value The text to write as-is.
+     * @throws IOException if the text cannot be written.
+     */
+    void appendPlain(String value) throws IOException;
+
+    /**
+     * Appends the decimal digits of a number.
+     *
+     * @param value The number.
+     * @throws IOException if the digits cannot be written.
+     */
+    void appendLong(long value) throws IOException;
+}
@@ -0,0 +1,32 @@
+import java.io.IOException;
+
+/**
+ * Thrown by a validating sink when the XML being written breaks the mapping sheet or the schema.
+ *
+ * The output written so far is incomplete and should be discarded.
+ */
+public class XmlValidationException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String path;
+
+    /**
+     * Creates an exception for the element at the given path.
+     *
+     * @param message The violation.
+     * @param path    The path of the offending element, e.g. {@code /Company/Branches/Branch}.
+     * @param cause   The underlying parse or schema error, or null.
+     */
+    public XmlValidationException(String message, String path, Throwable cause) {
+        super(message + " at " + path, cause);
+        this.path = path;
+    }
+
+    /**
+     * Gets the path of the offending element.
+     */
+    public String getPath() {
+        return path;
+    }
+}
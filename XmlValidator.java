@@ -0,0 +1,327 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import javax.xml.validation.Schema;
+import javax.xml.validation.ValidatorHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Validates XML while it is written, instead of reparsing the finished document.
+ *
+ * The rules are derived from the mapping plan: each element may only hold the children its mappings
+ * declare, in sheet order, with every child except collection items at most once, and leaf text must lie
+ * in the lexical space of the mapping's XML data type, including declared patterns. {@link XmlBuilder}
+ * follows the plan by construction, so for its output the structural rules only guard against other
+ * producers; what it can get wrong is a required element left out because its value was null, so the
+ * mappings whose element must be present can be selected as well. Text written by a direct converter
+ * (see {@link ValueConverter#isDirect()}) is in the lexical space of its type by construction and is not
+ * parsed again. An XSD may be supplied as well; the events are then also fed to a
+ * {@link ValidatorHandler}, so the document is checked against the schema in the same pass.
+ *
+ * A validator is compiled once per plan and is thread-safe; {@link #wrap(XmlSink)} creates the
+ * per-document state. The first violation is thrown as an {@link XmlValidationException}.
+ */
+public final class XmlValidator {
+
+    private final ElementRule root;
+    private final Schema schema;
+
+    /**
+     * Creates a validator checking the rules derived from the mapping plan.
+     *
+     * @param plan The compiled mapping plan.
+     */
+    public XmlValidator(MappingPlan plan) {
+        this(plan, null);
+    }
+
+    /**
+     * Creates a validator checking the rules derived from the mapping plan and the given schema.
+     *
+     * @param plan   The compiled mapping plan.
+     * @param schema The XSD the documents must conform to, or null.
+     */
+    public XmlValidator(MappingPlan plan, Schema schema) {
+        this(plan, schema, mapping -> false);
+    }
+
+    /**
+     * Creates a validator that also requires the elements of the selected mappings to be present.
+     *
+     * @param plan     The compiled mapping plan.
+     * @param schema   The XSD the documents must conform to, or null.
+     * @param required Selects the mappings whose element must appear in every parent element written,
+     *                 e.g. {@code m -> m.getApiFieldName().endsWith("Id")}; for a collection, its container.
+     */
+    public XmlValidator(MappingPlan plan, Schema schema, Predicate<ExcelMappingReader.XmlMapping> required) {
+        this.root = ElementRule.forSteps(plan.getRootElementName(), plan.getRoot().getSteps(), required);
+        this.schema = schema;
+    }
+
+    /**
+     * Wraps a sink so that every element passed to it is validated first.
+     *
+     * @param delegate The sink receiving the validated events.
+     * @return A sink for writing one document.
+     */
+    public XmlSink wrap(XmlSink delegate) {
+        return new ValidatingSink(delegate, root, schema != null ? schema.newValidatorHandler() : null);
+    }
+
+    /**
+     * The children, order, required children and value type allowed for one element.
+     */
+    private static final class ElementRule {
+        private static final String[] NONE = new String[0];
+
+        private final String name;
+        private final Map<String, ChildRule> children; // null for elements holding text
+        private final String[] required; // names of the required children, in position order
+        private final String dataType;
+        private final Function<String, Object> valueCheck; // null if any text is valid
+
+        private ElementRule(String name, Map<String, ChildRule> children, String[] required, String dataType) {
+            this.name = name;
+            this.children = children;
+            this.required = required;
+            this.dataType = dataType;
+            this.valueCheck = dataType != null ? DataTypeConverter.validatorFor(dataType) : null;
+        }
+
+        private static ElementRule forSteps(String name, List<MappingPlan.Step> steps, Predicate<ExcelMappingReader.XmlMapping> required) {
+            Map<String, ChildRule> children = new HashMap<>();
+            List<String> requiredNames = new ArrayList<>();
+            int position = 0;
+            for (MappingPlan.Step step : steps) {
+                ElementRule child;
+                boolean mandatory = false;
+                if (step instanceof MappingPlan.LeafStep) {
+                    MappingPlan.LeafStep leaf = (MappingPlan.LeafStep) step;
+                    child = forText(leaf.getXmlElementName(), leaf.getMapping().getXmlDataType());
+                    mandatory = required.test(leaf.getMapping());
+                } else if (step instanceof MappingPlan.ContainerStep) {
+                    MappingPlan.ContainerStep container = (MappingPlan.ContainerStep) step;
+                    child = forSteps(container.getElementName(), container.getSteps(), required);
+                } else {
+                    MappingPlan.CollectionStep collection = (MappingPlan.CollectionStep) step;
+                    MappingPlan.Node item = collection.getItem();
+                    ElementRule itemRule = collection.isScalar()
+                            ? forText(item.getElementName(), collection.getMapping().getXmlDataType())
+                            : forSteps(item.getElementName(), item.getSteps(), required);
+                    Map<String, ChildRule> items = new HashMap<>();
+                    items.put(item.getElementName(), new ChildRule(0, true, itemRule));
+                    child = new ElementRule(collection.getContainerName(), items, NONE, null);
+                    mandatory = required.test(collection.getMapping());
+                }
+                if (children.putIfAbsent(child.name, new ChildRule(position, false, child)) == null) {
+                    if (mandatory) {
+                        requiredNames.add(child.name);
+                    }
+                    position++;
+                }
+            }
+            return new ElementRule(name, children, requiredNames.toArray(NONE), null);
+        }
+
+        private static ElementRule forText(String name, String xmlDataType) {
+            return new ElementRule(name, null, NONE, xmlDataType);
+        }
+    }
+
+    /**
+     * Where a child may appear within its parent and whether it may repeat.
+     */
+    private static final class ChildRule {
+        private final int position;
+        private final boolean repeated;
+        private final ElementRule rule;
+
+        private ChildRule(int position, boolean repeated, ElementRule rule) {
+            this.position = position;
+            this.repeated = repeated;
+            this.rule = rule;
+        }
+    }
+
+    /**
+     * Checks the events of one document, then forwards them.
+     */
+    private static final class ValidatingSink implements XmlSink, ErrorHandler {
+        private static final AttributesImpl NO_ATTRIBUTES = new AttributesImpl();
+
+        private final XmlSink delegate;
+        private final ElementRule root;
+        private final ValidatorHandler schemaHandler;
+
+        // Open elements: their rule, the position of the last child seen, the number of required
+        // children seen and the text written so far
+        private ElementRule[] rules = new ElementRule[16];
+        private int[] lastPositions = new int[16];
+        private int[] requiredSeen = new int[16];
+        private String[] texts = new String[16];
+        private int depth;
+        private boolean directText; // the open leaf was written by a direct converter
+        private char[] chars = new char[256];
+
+        private ValidatingSink(XmlSink delegate, ElementRule root, ValidatorHandler schemaHandler) {
+            this.delegate = delegate;
+            this.root = root;
+            this.schemaHandler = schemaHandler;
+            if (schemaHandler != null) {
+                schemaHandler.setErrorHandler(this);
+            }
+        }
+
+        @Override
+        public void startElement(String name) throws IOException {
+            ElementRule rule;
+            if (depth == 0) {
+                if (!name.equals(root.name)) {
+                    throw violation("Expected root element <" + root.name + "> but found <" + name + ">", null);
+                }
+                rule = root;
+                schemaEvent(() -> schemaHandler.startDocument());
+            } else {
+                ElementRule parent = rules[depth - 1];
+                ChildRule child = parent.children != null ? parent.children.get(name) : null;
+                if (child == null) {
+                    throw violation("Unexpected element <" + name + ">", null);
+                }
+                if (child.position < lastPositions[depth - 1]) {
+                    throw violation("Element <" + name + "> out of order", null);
+                }
+                if (child.position == lastPositions[depth - 1] && !child.repeated) {
+                    throw violation("Element <" + name + "> occurs more than once", null);
+                }
+                // Children arrive in position order, so the next required one is either this or missing
+                String[] required = parent.required;
+                int seen = requiredSeen[depth - 1];
+                if (seen < required.length) {
+                    ChildRule next = parent.children.get(required[seen]);
+                    if (next.position < child.position) {
+                        throw violation("Missing required element <" + required[seen] + "> before <" + name + ">", null);
+                    } else if (next == child) {
+                        requiredSeen[depth - 1]++;
+                    }
+                }
+                lastPositions[depth - 1] = child.position;
+                rule = child.rule;
+            }
+            if (depth == rules.length) {
+                rules = Arrays.copyOf(rules, depth * 2);
+                lastPositions = Arrays.copyOf(lastPositions, depth * 2);
+                requiredSeen = Arrays.copyOf(requiredSeen, depth * 2);
+                texts = Arrays.copyOf(texts, depth * 2);
+            }
+            rules[depth] = rule;
+            lastPositions[depth] = -1;
+            requiredSeen[depth] = 0;
+            texts[depth] = null;
+            directText = false;
+            depth++;
+            schemaEvent(() -> schemaHandler.startElement("", name, name, NO_ATTRIBUTES));
+            delegate.startElement(name);
+        }
+
+        @Override
+        public void text(String value) throws IOException {
+            if (value == null || value.isEmpty()) return;
+            if (rules[depth - 1].children != null) {
+                throw violation("Unexpected text", null);
+            }
+            texts[depth - 1] = texts[depth - 1] == null ? value : texts[depth - 1] + value;
+            if (schemaHandler != null) {
+                if (chars.length < value.length()) {
+                    chars = new char[Math.max(value.length(), chars.length * 2)];
+                }
+                value.getChars(0, value.length(), chars, 0);
+                schemaEvent(() -> schemaHandler.characters(chars, 0, value.length()));
+            }
+            delegate.text(value);
+        }
+
+        @Override
+        public void leaf(String name, Object value, ValueConverter converter) throws IOException {
+            String convertedValue = converter.convert(value);
+            if (convertedValue == null || convertedValue.isEmpty()) return;
+            startElement(name);
+            directText = converter.isDirect();
+            text(convertedValue);
+            endElement();
+        }
+
+        @Override
+        public void endElement() throws IOException {
+            ElementRule rule = rules[depth - 1];
+            if (requiredSeen[depth - 1] < rule.required.length) {
+                throw violation("Missing required element <" + rule.required[requiredSeen[depth - 1]] + ">", null);
+            }
+            if (rule.valueCheck != null && texts[depth - 1] != null && !directText) {
+                try {
+                    rule.valueCheck.apply(texts[depth - 1]);
+                } catch (IllegalArgumentException e) {
+                    throw violation("Invalid " + rule.dataType + " value '" + texts[depth - 1] + "'", e);
+                }
+            }
+            schemaEvent(() -> schemaHandler.endElement("", rule.name, rule.name));
+            depth--;
+            rules[depth] = null;
+            texts[depth] = null;
+            directText = false;
+            if (depth == 0) {
+                schemaEvent(() -> schemaHandler.endDocument());
+            }
+            delegate.endElement();
+        }
+
+        @Override
+        public void warning(SAXParseException exception) {
+            // Warnings do not make the document invalid
+        }
+
+        @Override
+        public void error(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        @Override
+        public void fatalError(SAXParseException exception) throws SAXException {
+            throw exception;
+        }
+
+        /**
+         * Passes one event to the schema validator, reporting its first error at the current element.
+         */
+        private void schemaEvent(SchemaEvent event) throws XmlValidationException {
+            if (schemaHandler == null) return;
+            try {
+                event.run();
+            } catch (SAXException e) {
+                throw violation(e.getMessage(), e);
+            }
+        }
+
+        private XmlValidationException violation(String message, Throwable cause) {
+            StringBuilder path = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                path.append('/').append(rules[i].name);
+            }
+            return new XmlValidationException(message, path.length() == 0 ? "/" : path.toString(), cause);
+        }
+    }
+
+    /**
+     * One call into the schema validator.
+     */
+    private interface SchemaEvent {
+        void run() throws SAXException;
+    }
+}
@@ -0,0 +1,98 @@
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Synthetic mapping sheet and Company/Branch/Team/Member graphs for the benchmarks.
+ */
+public class BenchmarkData {
+
+    // Leaf values written per member: id, name, role, two technologies and one task with three fields
+    static final int LEAVES_PER_MEMBER = 8;
+    private static final int MEMBERS_PER_TEAM = 10;
+    private static final int TEAMS_PER_BRANCH = 10;
+
+    private static final String[][] ROWS = {
+            {"Company", "name", "String", "CompanyName", "String", "Company"},
+            {"Company", "location", "String", "Location", "String", "Company"},
+            {"Branch", "branches", "List<Branch>", "Branches", "", "Company/Branches"},
+            {"Branch", "branchName", "String", "BranchName", "String", "Company/Branches"},
+            {"Team", "teams", "List<Team>", "Teams", "", "Company/Branches/Teams"},
+            {"Team", "teamName", "String", "TeamName", "String", "Company/Branches/Teams"},
+            {"Member", "members", "List<Member>", "Members", "", "Company/Branches/Teams/Members"},
+            {"Member", "memberId", "String", "MemberId", "String", "Company/Branches/Teams/Members"},
+            {"Member", "name", "String", "Name", "String", "Company/Branches/Teams/Members"},
+            {"Member", "role", "String", "Role", "String", "Company/Branches/Teams/Members"},
+            {"Technology", "technologies", "List<String>", "Technologies", "String", "Company/Branches/Teams/Members/Technologies"},
+            {"Task", "tasks", "List<Task>", "Tasks", "", "Company/Branches/Teams/Members/Tasks"},
+            {"Task", "taskId", "String", "TaskId", "String", "Company/Branches/Teams/Members/Tasks"},
+            {"Task", "title", "String", "Title", "String", "Company/Branches/Teams/Members/Tasks"},
+            {"Task", "status", "String", "Status", "String", "Company/Branches/Teams/Members/Tasks"},
+            {"Campaign", "campaigns", "List<Campaign>", "Campaigns", "", "Company/Branches/Teams/Members/Campaigns"},
+            {"Campaign", "campaignId", "String", "CampaignId", "String", "Company/Branches/Teams/Members/Campaigns"},
+            {"Campaign", "name", "String", "CampaignName", "String", "Company/Branches/Teams/Members/Campaigns"},
+            {"Campaign", "status", "String", "Status", "String", "Company/Branches/Teams/Members/Campaigns"},
+    };
+
+    /**
+     * Returns the benchmark mapping rows, equivalent to a typical field_mappings.xlsx.
+     */
+    static List<ExcelMappingReader.XmlMapping> mappings() {
+        List<ExcelMappingReader.XmlMapping> mappings = new ArrayList<>();
+        for (String[] row : ROWS) {
+            mappings.add(new ExcelMappingReader.XmlMapping(row[0], row[1], row[2], row[3], row[4], row[5]));
+        }
+        return mappings;
+    }
+
+    /**
+     * Writes the benchmark mapping rows as an Excel workbook.
+     */
+    static void writeWorkbook(String path) throws IOException {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); FileOutputStream out = new FileOutputStream(path)) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            String[] titles = {"Group", "API Field Name", "API Data Type", "XML Element Name", "XML Data Type", "XML Path"};
+            for (int i = 0; i < titles.length; i++) {
+                header.createCell(i).setCellValue(titles[i]);
+            }
+            for (int r = 0; r < ROWS.length; r++) {
+                Row row = sheet.createRow(r + 1);
+                for (int i = 0; i < ROWS[r].length; i++) {
+                    row.createCell(i).setCellValue(ROWS[r][i]);
+                }
+            }
+            workbook.write(out);
+        }
+    }
+
+    /**
+     * Builds a company whose XML output holds roughly the given number of leaf values.
+     */
+    static Company company(int leaves) {
+        int memberCount = Math.max(1, (leaves + LEAVES_PER_MEMBER - 1) / LEAVES_PER_MEMBER);
+        List<Branch> branches = new ArrayList<>();
+        List<Team> teams = new ArrayList<>();
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < memberCount; i++) {
+            Task task = new Task("T" + i, "Task " + i, i % 3 == 0 ? "Completed" : "In Progress");
+            members.add(new Member("M" + i, "Member " + i, "Developer & Reviewer",
+                    Arrays.asList("Java", "SQL"), Arrays.asList(task), null));
+            if (members.size() == MEMBERS_PER_TEAM || i == memberCount - 1) {
+                teams.add(new Team("Team " + teams.size(), members));
+                members = new ArrayList<>();
+            }
+            if (teams.size() == TEAMS_PER_BRANCH || (i == memberCount - 1 && !teams.isEmpty())) {
+                branches.add(new Branch("Branch " + branches.size(), teams));
+                teams = new ArrayList<>();
+            }
+        }
+        return new Company("Benchmark Enterprises", "London", branches);
+    }
+}
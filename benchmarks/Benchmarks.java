@@ -0,0 +1,230 @@
+import java.io.File;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Benchmarks for each conversion stage: mapping load, field access, type conversion and serialization.
+ *
+ * Every benchmark is warmed up, then run repeatedly for a fixed time while recording per-operation
+ * latency and the bytes allocated by the measuring thread. Reported per benchmark: throughput,
+ * mean/p50/p99/max latency and allocation per operation.
+ *
+ * Usage: {@code Benchmarks [load] [access] [convert] [serialize] [--scales=10,10000,1000000]
+ * [--warmup=ms] [--time=ms]}. Without stage names all stages run. Run with a fixed heap
+ * (e.g. {@code -Xms4g -Xmx4g}) for comparable numbers.
+ *
+ * The harness is not part of the build. From the repository root, with the poi-ooxml jars and their
+ * dependencies in {@code lib/}:
+ * <pre>
+ * javac -cp "lib/*" -d target/benchmarks *.java benchmarks/*.java
+ * java -Xms4g -Xmx4g -cp "target/benchmarks:lib/*" Benchmarks serialize --scales=10000
+ * </pre>
+ * The benchmark data is generated, so no mapping file is needed.
+ */
+public class Benchmarks {
+
+    private static final int[] DEFAULT_SCALES = {10, 10_000, 1_000_000};
+
+    // Serialization into a DOM is skipped above this many leaves to keep the heap requirement sane
+    private static final int DOM_LEAF_LIMIT = 100_000;
+
+    private static volatile int blackhole;
+
+    private final long warmupMillis;
+    private final long measureMillis;
+
+    private Benchmarks(long warmupMillis, long measureMillis) {
+        this.warmupMillis = warmupMillis;
+        this.measureMillis = measureMillis;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<String> stages = new ArrayList<>();
+        int[] scales = DEFAULT_SCALES;
+        long warmupMillis = 2_000;
+        long measureMillis = 5_000;
+        for (String arg : args) {
+            if (arg.startsWith("--scales=")) {
+                scales = Arrays.stream(arg.substring("--scales=".length()).split(",")).mapToInt(Integer::parseInt).toArray();
+            } else if (arg.startsWith("--warmup=")) {
+                warmupMillis = Long.parseLong(arg.substring("--warmup=".length()));
+            } else if (arg.startsWith("--time=")) {
+                measureMillis = Long.parseLong(arg.substring("--time=".length()));
+            } else {
+                stages.add(arg);
+            }
+        }
+        if (stages.isEmpty()) {
+            stages = Arrays.asList("load", "access", "convert", "serialize");
+        }
+
+        Benchmarks benchmarks = new Benchmarks(warmupMillis, measureMillis);
+        System.out.printf("%-44s %14s %10s %10s %10s %10s %14s%n", "Benchmark", "ops/s", "mean", "p50", "p99", "max", "alloc B/op");
+        for (String stage : stages) {
+            switch (stage) {
+                case "load":
+                    benchmarks.mappingLoad();
+                    break;
+                case "access":
+                    benchmarks.fieldAccess();
+                    break;
+                case "convert":
+                    benchmarks.typeConversion();
+                    break;
+                case "serialize":
+                    for (int leaves : scales) {
+                        benchmarks.serialization(leaves);
+                    }
+                    break;
+                default:
+                    System.err.println("Unknown stage: " + stage);
+            }
+        }
+    }
+
+    /**
+     * Reading and compiling the mapping sheet.
+     */
+    private void mappingLoad() throws Exception {
+        File workbook = File.createTempFile("benchmark_mappings", ".xlsx");
+        File snapshot = File.createTempFile("benchmark_mappings", ".snapshot");
+        workbook.deleteOnExit();
+        snapshot.deleteOnExit();
+        BenchmarkData.writeWorkbook(workbook.getPath());
+        List<ExcelMappingReader.XmlMapping> mappings = BenchmarkData.mappings();
+        MappingSnapshot.writeFile(mappings, snapshot.getPath());
+
+        run("load.readMappings (XSSFWorkbook)", () -> ExcelMappingReader.readMappings(workbook.getPath()));
+        run("load.readMappingsStreaming (SAX)", () -> ExcelMappingReader.readMappingsStreaming(workbook.getPath()));
+        run("load.snapshot", () -> MappingSnapshot.readFile(snapshot.getPath()));
+        run("load.compilePlan", () -> MappingPlan.compile(mappings));
+    }
+
+    /**
+     * Reading one field, uncached reflection versus the cached accessor.
+     */
+    private void fieldAccess() throws Exception {
+        Member member = BenchmarkData.company(BenchmarkData.LEAVES_PER_MEMBER).getBranches().get(0).getTeams().get(0).getMembers().get(0);
+        run("access.reflection (per-read lookup)", () -> {
+            Field field = Member.class.getDeclaredField("name");
+            field.setAccessible(true);
+            return field.get(member);
+        });
+        run("access.FieldAccessor", () -> FieldAccessor.forField(member.getClass(), "name").get(member));
+    }
+
+    /**
+     * Converting single leaf values.
+     */
+    private void typeConversion() throws Exception {
+        Integer number = 123456;
+        String text = "Member 42";
+        ValueConverter integerConverter = DataTypeConverter.forTypes("Integer", "Integer");
+        ValueConverter stringConverter = DataTypeConverter.forTypes("String", "String");
+        StreamingXmlWriter nullWriter = new StreamingXmlWriter(Writer.nullWriter(), false);
+
+        run("convert.integer (by type names)", () -> DataTypeConverter.convert(number, "Integer", "Integer"));
+        run("convert.integer (resolved)", () -> integerConverter.convert(number));
+        run("convert.integer (direct write)", () -> {
+            nullWriter.leaf("Value", number, integerConverter);
+            return nullWriter;
+        });
+        run("convert.string (by type names)", () -> DataTypeConverter.convert(text, "String", "String"));
+        run("convert.string (resolved)", () -> stringConverter.convert(text));
+    }
+
+    /**
+     * Converting whole documents of the given size.
+     */
+    private void serialization(int leaves) throws Exception {
+        MappingPlan plan = MappingPlan.compile(BenchmarkData.mappings());
+        Company company = BenchmarkData.company(leaves);
+        XmlConversionEngine engine = new XmlConversionEngine();
+        String suffix = " [" + leaves + " leaves]";
+
+        if (leaves <= DOM_LEAF_LIMIT) {
+            run("serialize.buildXml (DOM)" + suffix, () -> XmlBuilder.buildXml(plan, company));
+        }
+        run("serialize.writeXml (streaming)" + suffix, () -> {
+            XmlBuilder.writeXml(plan, company, Writer.nullWriter(), true);
+            return company;
+        });
+        CompiledXmlWriter compiled = CompiledXmlWriter.forPlan(plan, Company.class);
+        run("serialize.compiled (generated)" + suffix, () -> {
+            compiled.writeXml(company, Writer.nullWriter(), true);
+            return company;
+        });
+        IncrementalXmlWriter incremental = new IncrementalXmlWriter(plan, true);
+        run("serialize.incremental (unchanged)" + suffix, () -> {
+            incremental.writeXml(company, Writer.nullWriter());
+            return company;
+        });
+        run("serialize.engine (UTF-8 bytes)" + suffix, () -> engine.convert(plan, company));
+        run("serialize.engine (pooled buffer)" + suffix, () -> {
+            try (PooledXmlBuffer buffer = engine.convertToBuffer(plan, company)) {
+                return buffer.size();
+            }
+        });
+        run("serialize.parallel" + suffix, () -> {
+            ParallelXmlBuilder.writeXml(plan, company, Writer.nullWriter(), true);
+            return company;
+        });
+    }
+
+    /**
+     * Warms up and measures one operation, then prints its results.
+     */
+    private void run(String name, Operation operation) throws Exception {
+        loop(operation, warmupMillis, null);
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        LatencyStats stats = new LatencyStats();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        long operations = loop(operation, measureMillis, stats);
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        System.out.printf("%-44s %14.1f %10s %10s %10s %10s %14d%n",
+                name,
+                operations * 1_000_000_000.0 / elapsed,
+                LatencyStats.format(stats.mean()),
+                LatencyStats.format(stats.percentile(50)),
+                LatencyStats.format(stats.percentile(99)),
+                LatencyStats.format(stats.percentile(100)),
+                allocated / Math.max(1, operations));
+    }
+
+    /**
+     * Runs the operation until the time budget is spent, always at least once.
+     */
+    private static long loop(Operation operation, long millis, LatencyStats stats) throws Exception {
+        long deadline = System.nanoTime() + millis * 1_000_000;
+        long operations = 0;
+        int sink = 0;
+        do {
+            long begin = System.nanoTime();
+            Object result = operation.run();
+            long end = System.nanoTime();
+            if (stats != null) {
+                stats.record(end - begin);
+            }
+            sink += System.identityHashCode(result);
+            operations++;
+        } while (System.nanoTime() < deadline);
+        blackhole = sink;
+        return operations;
+    }
+
+    /**
+     * A benchmarked operation; its result is consumed so the JIT cannot discard the work.
+     */
+    private interface Operation {
+        Object run() throws Exception;
+    }
+}